@@ -0,0 +1,103 @@
+package de.metal_land.tsp;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The problems used by the benchmarks. Besides the TSPLIB files of the project, problems with uniform or clustered
+ * nodes are generated from a fixed seed, so every run measures the same problem.
+ * <p>
+ * Names: att48, att532, uniform-n and clustered-n, where n is the number of nodes.
+ * @author nieh
+ */
+final class BenchmarkInstances {
+    private static final long SEED = 42;
+    private static final double SIDE = 1000000;
+
+    private BenchmarkInstances(){
+    }
+
+    /**
+     * Reads or generates the problem and calculates its distances.
+     * @param instance The name of the problem.
+     * @return The problem without a route.
+     */
+    static TSP load(String instance){
+        // the searches log every improvement, which would be measured as well
+        Logger.getLogger(TSP.class.getName()).setLevel(Level.WARNING);
+
+        TSP problem = new TSP();
+        if(instance.startsWith("uniform-")){
+            problem.readFromFile(generate(instance, Integer.parseInt(instance.substring(8)), false));
+        } else if(instance.startsWith("clustered-")){
+            problem.readFromFile(generate(instance, Integer.parseInt(instance.substring(10)), true));
+        } else {
+            File srcFile = new File(System.getProperty("tsp.dir", "."), instance + ".tsp");
+            try (InputStream in = new FileInputStream(srcFile)) {
+                problem.readFromFile(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        problem.calculateDistances();
+
+        return problem;
+    }
+
+    /**
+     * Creates a problem in the TSPLIB format with the EUC_2D metric.
+     * @param clustered True to place the nodes around a few centers, otherwise they are spread uniformly.
+     */
+    private static ByteArrayInputStream generate(String name, int size, boolean clustered){
+        SplittableRandom random = new SplittableRandom(SEED);
+        StringBuilder text = new StringBuilder(size * 24);
+        text.append("NAME : ").append(name).append('\n');
+        text.append("TYPE : TSP\n");
+        text.append("DIMENSION : ").append(size).append('\n');
+        text.append("EDGE_WEIGHT_TYPE : EUC_2D\n");
+        text.append("NODE_COORD_SECTION\n");
+
+        int clusters = Math.max(1, size / 100);
+        double[] centerX = new double[clusters];
+        double[] centerY = new double[clusters];
+        for(int i=0; i<clusters; i++){
+            centerX[i] = random.nextDouble(SIDE);
+            centerY[i] = random.nextDouble(SIDE);
+        }
+
+        for(int i=0; i<size; i++){
+            double x;
+            double y;
+            if(clustered){
+                int cluster = random.nextInt(clusters);
+                x = centerX[cluster] + gaussian(random) * SIDE / 50;
+                y = centerY[cluster] + gaussian(random) * SIDE / 50;
+            } else {
+                x = random.nextDouble(SIDE);
+                y = random.nextDouble(SIDE);
+            }
+            text.append(i + 1).append(' ').append(Math.round(x)).append(' ').append(Math.round(y)).append('\n');
+        }
+        text.append("EOF\n");
+
+        return new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * A normally distributed value by the Box-Muller transform, SplittableRandom has none.
+     */
+    private static double gaussian(SplittableRandom random){
+        double u = 1 - random.nextDouble();
+        double v = random.nextDouble();
+
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * v);
+    }
+}
@@ -0,0 +1,54 @@
+package de.metal_land.tsp;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the construction heuristics.
+ * @author nieh
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConstructionBenchmark {
+    @Param({"att48", "att532", "uniform-2000", "clustered-2000"})
+    private String instance;
+
+    private TSP problem;
+
+    @Setup
+    public void setup(){
+        problem = BenchmarkInstances.load(instance);
+    }
+
+    /**
+     * The heuristic to measure, only used by {@link #construct(Heuristic)}.
+     */
+    @State(Scope.Benchmark)
+    public static class Heuristic {
+        @Param({"NEAREST_NEIGHBOR", "GREEDY_EDGE", "SPACE_FILLING_CURVE", "CHEAPEST_INSERTION", "FARTHEST_INSERTION"})
+        private Construction construction;
+    }
+
+    /**
+     * One run of the heuristic from a single start node.
+     */
+    @Benchmark
+    public Route construct(Heuristic heuristic){
+        return heuristic.construction.build(problem, 0);
+    }
+
+    /**
+     * The nearest neighbor heuristic from every node on all threads, as used by {@link TSP#greedy()}.
+     */
+    @Benchmark
+    public Route greedy(){
+        problem.greedy();
+
+        return problem.getBestRoute();
+    }
+}
@@ -0,0 +1,93 @@
+package de.metal_land.tsp;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the distance function of the nodes, the lookup in the distance cache and building the cache.
+ * @author nieh
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DistanceBenchmark {
+    @Param({"att48", "att532", "uniform-2000", "clustered-2000"})
+    private String instance;
+
+    private TSP problem;
+    private Node[] nodes;
+    private int[] row;
+
+    @Setup
+    public void setup(){
+        problem = BenchmarkInstances.load(instance);
+        List<Node> list = problem.getNodes();
+        nodes = list.toArray(new Node[list.size()]);
+        row = new int[nodes.length];
+    }
+
+    /**
+     * The distances along the nodes in file order, n calls of {@link Node#distanceTo(Node)}.
+     */
+    @Benchmark
+    public int distanceTo(){
+        int sum = 0;
+        Node last = nodes[nodes.length - 1];
+        for (Node node : nodes) {
+            sum += last.distanceTo(node);
+            last = node;
+        }
+
+        return sum;
+    }
+
+    /**
+     * The same distances as {@link #distanceTo()} read from the distance cache.
+     */
+    @Benchmark
+    public int cachedDistance(){
+        DistanceCache distances = problem.getDistances();
+        int sum = 0;
+        int last = nodes.length - 1;
+        for(int node=0; node<nodes.length; node++){
+            sum += distances.distance(last, node);
+            last = node;
+        }
+
+        return sum;
+    }
+
+    /**
+     * The distances from every node to all nodes, n rows of the {@link DistanceKernel}.
+     */
+    @Benchmark
+    public int kernelRows(){
+        Coordinates coordinates = problem.getCoordinates();
+        int sum = 0;
+        for(int node=0; node<nodes.length; node++){
+            coordinates.row(node, 0, nodes.length, row, 0);
+            sum += row[nodes.length - 1 - node];
+        }
+
+        return sum;
+    }
+
+    /**
+     * Builds the distance cache, the spatial index and the candidate lists.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    public CandidateLists calculateDistances(){
+        problem.calculateDistances();
+
+        return problem.getCandidates();
+    }
+}
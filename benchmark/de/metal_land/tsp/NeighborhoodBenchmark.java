@@ -0,0 +1,60 @@
+package de.metal_land.tsp;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures one step of the tabu search and the 2-opt/or-opt local search, both starting from the route along the
+ * space filling curve.
+ * @author nieh
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NeighborhoodBenchmark {
+    @Param({"att48", "att532", "uniform-2000", "clustered-2000"})
+    private String instance;
+
+    private TSP problem;
+    private Route route;
+    private TabuList tabuList;
+    private ForkJoinPool pool;
+    private SplittableRandom random;
+
+    @Setup
+    public void setup(){
+        problem = BenchmarkInstances.load(instance);
+        problem.construct(Construction.SPACE_FILLING_CURVE);
+        route = problem.getBestRoute();
+        tabuList = new TabuList(problem.getTabuListMaxSize());
+        pool = new ForkJoinPool(problem.getParallelism());
+        random = new SplittableRandom(1);
+    }
+
+    @TearDown
+    public void tearDown(){
+        pool.shutdown();
+    }
+
+    /**
+     * Samples the random neighbors of the route and picks the best allowed one.
+     */
+    @Benchmark
+    public Route getBestNeighbor(){
+        return route.getBestNeighbor(tabuList, route.getDistance(), pool, random);
+    }
+
+    /**
+     * Optimizes the route until no improving 2-opt or or-opt move is left.
+     */
+    @Benchmark
+    public Route optimize(){
+        return problem.optimize(route);
+    }
+}
@@ -0,0 +1,128 @@
+package de.metal_land.tsp;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the quality the whole solver reaches in time: the time until the route is within a gap of the optimum,
+ * and the distance of the route after a fixed time. Both start with the nearest neighbor route.
+ * <p>
+ * The distance is reported as the secondary result "distance" of {@link #distanceAfterTime(Quality)}, the time of
+ * that benchmark is just the time limit.
+ * @author nieh
+ */
+@Fork(1)
+@State(Scope.Benchmark)
+public class SolveBenchmark {
+    @Param({"att48", "att532"})
+    private String instance;
+
+    @Param({"TABU_SEARCH", "LIN_KERNIGHAN"})
+    private TSP.Improvement improvement;
+
+    /**
+     * The allowed gap to the optimum in percent.
+     */
+    @Param({"2"})
+    private double gap;
+
+    /**
+     * The time limit in seconds.
+     */
+    @Param({"5"})
+    private int seconds;
+
+    private long seed = 0;
+
+    /**
+     * Loads a new problem with the nearest neighbor route and a new seed.
+     */
+    private TSP prepare(StopCondition stopCondition){
+        TSP run = BenchmarkInstances.load(instance);
+        run.setSeed(++seed);
+        run.setImprovement(improvement);
+        run.setStopCondition(stopCondition);
+        run.construct(Construction.NEAREST_NEIGHBOR);
+
+        return run;
+    }
+
+    /**
+     * The optimal distances of the TSPLIB problems.
+     */
+    private static int optimum(String instance){
+        switch (instance){
+            case "att48":
+                return 10628;
+            case "att532":
+                return 27686;
+            default:
+                throw new IllegalArgumentException("No known optimum for " + instance);
+        }
+    }
+
+    /**
+     * The problem of the next invocation, prepared outside of the measured time.
+     */
+    @State(Scope.Thread)
+    public static class Run {
+        private TSP problem;
+
+        @Setup(Level.Invocation)
+        public void setup(SolveBenchmark benchmark){
+            StopCondition stopCondition = new StopCondition();
+            stopCondition.setMaxStagnation(0);
+            stopCondition.setTimeLimit(TimeUnit.SECONDS.toMillis(benchmark.seconds * 10L));
+            stopCondition.setTargetDistance((int) (optimum(benchmark.instance) * (1 + benchmark.gap / 100)));
+            problem = benchmark.prepare(stopCondition);
+        }
+    }
+
+    /**
+     * The time until the route is within the gap of the optimum, at most ten times the time limit.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 10)
+    public Route timeToTarget(Run run){
+        run.problem.improve();
+
+        return run.problem.getBestRoute();
+    }
+
+    /**
+     * The distance of the route reached in the time limit, one search per iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Quality {
+        private TSP problem;
+
+        /**
+         * The distance of the best route of the iteration.
+         */
+        public long distance;
+
+        @Setup(Level.Iteration)
+        public void setup(SolveBenchmark benchmark){
+            StopCondition stopCondition = new StopCondition();
+            stopCondition.setMaxStagnation(0);
+            stopCondition.setTimeLimit(TimeUnit.SECONDS.toMillis(benchmark.seconds));
+            problem = benchmark.prepare(stopCondition);
+            distance = 0;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 1, time = 1, timeUnit = TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.MILLISECONDS)
+    public void distanceAfterTime(Quality quality){
+        quality.problem.improve();
+        quality.distance = quality.problem.getBestRoute().getDistance();
+    }
+}
@@ -0,0 +1,304 @@
+package de.metal_land.tsp;
+
+import lombok.Data;
+import lombok.extern.java.Log;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+
+/**
+ * Solves many problem files without a user interface. The files are solved shortest job first by their DIMENSION,
+ * up to concurrency at the same time. Every solve runs its sequential parts on its own thread and the parallel parts
+ * on a pool shared by all solves, which has the threads left over by the solves, so the batch uses at most the
+ * given number of threads, but at least concurrency + 1. Every solve has its own time limit. The best route of every
+ * file is written as TSPLIB tour file to the output directory, and a line with its distance and run time is added
+ * to summary.csv there.
+ * @author nieh
+ */
+@Log
+@Data
+public class Batch {
+    /**
+     * The number of threads of the batch, the threads of the solves and the workers of the shared pool.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The number of problems solved at the same time, at most the number of threads.
+     */
+    private int concurrency = 1;
+
+    /**
+     * The time limit of every problem in milliseconds, it starts after the problem is read and every stage of the
+     * solve stops at its end.
+     */
+    private long timeLimit = 10000;
+
+    /**
+     * An additional time limit per node of the problem in milliseconds.
+     */
+    private double timePerNode = 0;
+
+    /**
+     * The number of start nodes tried by the construction of every problem, see {@link TSP#getStartNodes()}.
+     */
+    private int startNodes = 32;
+
+    /**
+     * The seed of the random numbers of every solve, if null every run differs.
+     */
+    private Long seed = null;
+
+    /**
+     * The directory the tour files and the summary are written to.
+     */
+    private Path outputDirectory = Paths.get(".");
+
+    public static void main(String args[]){
+        Batch batch = new Batch();
+        List<Path> inputs = new ArrayList<>();
+        try {
+            for(int i=0; i<args.length; i++){
+                switch (args[i]){
+                    case "-t":
+                        batch.setThreads(Integer.parseInt(args[++i]));
+                        break;
+                    case "-j":
+                        batch.setConcurrency(Integer.parseInt(args[++i]));
+                        break;
+                    case "-s":
+                        batch.setTimeLimit((long) (Double.parseDouble(args[++i]) * 1000));
+                        break;
+                    case "-n":
+                        batch.setTimePerNode(Double.parseDouble(args[++i]));
+                        break;
+                    case "-o":
+                        batch.setOutputDirectory(Paths.get(args[++i]));
+                        break;
+                    default:
+                        inputs.add(Paths.get(args[i]));
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            inputs.clear();
+        }
+
+        if(inputs.isEmpty()){
+            System.err.println("Usage: Batch [-t threads] [-j concurrent solves] [-s seconds per problem] "
+                    + "[-n milliseconds per node] [-o output directory] <directory or .tsp files>...");
+            System.exit(1);
+        }
+
+        List<Result> results = batch.solve(inputs);
+        int failed = 0;
+        for (Result result : results) {
+            if(result.getError() != null){
+                failed++;
+            }
+        }
+        log.info(String.format("Solved %d of %d problems", results.size() - failed, results.size()));
+        System.exit((failed > 0)? 2 : 0);
+    }
+
+    /**
+     * Solves all .tsp files of the given files and directories.
+     * @param inputs The problem files and directories of problem files.
+     * @return The results in the order the problems were started.
+     */
+    public List<Result> solve(List<Path> inputs){
+        List<Job> jobs = new ArrayList<>();
+        try {
+            for (Path input : inputs) {
+                if(Files.isDirectory(input)){
+                    try (DirectoryStream<Path> files = Files.newDirectoryStream(input, "*.tsp")) {
+                        for (Path file : files) {
+                            jobs.add(new Job(file));
+                        }
+                    }
+                } else {
+                    jobs.add(new Job(input));
+                }
+            }
+            Files.createDirectories(outputDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // shortest job first, ties by name so the order is stable
+        Collections.sort(jobs, new Comparator<Job>() {
+            @Override
+            public int compare(Job a, Job b) {
+                int compare = Integer.compare(a.dimension, b.dimension);
+                return (compare != 0)? compare : a.file.compareTo(b.file);
+            }
+        });
+
+        int solves = Math.max(1, Math.min(concurrency, threads));
+        int workers = Math.max(1, threads - solves);
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        ExecutorService executor = Executors.newFixedThreadPool(solves);
+        List<Result> results = new ArrayList<>(jobs.size());
+        try (Summary summary = new Summary(outputDirectory.resolve("summary.csv"))) {
+            List<Future<Result>> futures = new ArrayList<>(jobs.size());
+            for (Job job : jobs) {
+                job.pool = pool;
+                job.parallelism = Math.max(1, workers / solves);
+                job.summary = summary;
+                futures.add(executor.submit(job));
+            }
+
+            for (Future<Result> future : futures) {
+                results.add(future.get());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+            pool.shutdownNow();
+        }
+
+        return results;
+    }
+
+    /**
+     * The outcome of one problem file.
+     */
+    @Data
+    public static class Result {
+        private final Path file;
+        private final String name;
+        private final int dimension;
+
+        /**
+         * The distance of the best route, -1 if the solve failed.
+         */
+        private final int distance;
+
+        /**
+         * The Held-Karp lower bound, 0 if it was not calculated.
+         */
+        private final int lowerBound;
+
+        /**
+         * The time to read and solve the problem in milliseconds.
+         */
+        private final long runtime;
+
+        /**
+         * The message of the failure, null if the problem was solved.
+         */
+        private final String error;
+    }
+
+    /**
+     * The solve of one problem file.
+     */
+    private class Job implements Callable<Result> {
+        private final Path file;
+        private final int dimension;
+        private ForkJoinPool pool;
+        private int parallelism;
+        private Summary summary;
+
+        /**
+         * Reads the header of the file for the DIMENSION, unreadable files are sorted first and fail fast.
+         */
+        Job(Path file){
+            this.file = file;
+            int size = -1;
+            try (InputStream in = Files.newInputStream(file)) {
+                size = new TsplibReader(in).readHeader().getDimension();
+            } catch (IOException | IllegalArgumentException e) {
+                log.log(Level.FINE, "Header of " + file + " could not be read", e);
+            }
+            this.dimension = size;
+        }
+
+        @Override
+        public Result call() {
+            long start = System.nanoTime();
+            TSP problem = new TSP();
+            Result result;
+            try {
+                try (InputStream in = Files.newInputStream(file)) {
+                    problem.readFromFile(in);
+                }
+                if(problem.getNodes().size() < 3){
+                    throw new IllegalArgumentException("Not a problem of at least 3 nodes");
+                }
+                problem.setParallelism(parallelism);
+                problem.sharePool(pool);
+                problem.setSeed(seed);
+                problem.setStartNodes(startNodes);
+                problem.getStopCondition().setTimeLimit(timeLimit + (long) (timePerNode * problem.getNodes().size()));
+                problem.fixDeadline();
+                try {
+                    problem.calculateDistances();
+                    problem.solve();
+                } finally {
+                    problem.clearDeadline();
+                }
+
+                String tourName = file.getFileName().toString().replaceFirst("\\.tsp$", "") + ".tour";
+                problem.writeTour(outputDirectory.resolve(tourName));
+                result = new Result(file, problem.getName(), problem.getNodes().size(),
+                        problem.getBestRoute().getDistance(), problem.getLowerBound(), elapsed(start), null);
+                log.info(String.format("%s: %d in %d ms", problem.getName(), result.getDistance(), result.getRuntime()));
+            } catch (IOException | RuntimeException e) {
+                log.log(Level.WARNING, "Solving " + file + " failed", e);
+                String message = (e.getMessage() != null)? e.getMessage() : e.getClass().getSimpleName();
+                result = new Result(file, problem.getName(), dimension, -1, 0, elapsed(start), message);
+            }
+
+            summary.add(result);
+            return result;
+        }
+    }
+
+    private static long elapsed(long start){
+        return (System.nanoTime() - start) / 1000000;
+    }
+
+    /**
+     * The summary file, every result is written as soon as it is known so an aborted batch keeps its results.
+     */
+    private static class Summary implements Closeable {
+        private final PrintWriter out;
+
+        Summary(Path file) throws IOException {
+            out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+            out.println("file,name,dimension,distance,lower_bound,runtime_ms,error");
+            out.flush();
+        }
+
+        synchronized void add(Result result){
+            out.println(String.format("%s,%s,%d,%d,%d,%d,%s", quote(result.getFile().toString()),
+                    quote(result.getName()), result.getDimension(), result.getDistance(), result.getLowerBound(),
+                    result.getRuntime(), (result.getError() != null)? quote(result.getError()) : ""));
+            out.flush();
+        }
+
+        private static String quote(String value){
+            if(value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0){
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+
+        @Override
+        public synchronized void close() {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package de.metal_land.tsp;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A problem in a compact binary format, which is loaded by mapping the file into memory. Besides the nodes the
+ * file may hold the distances and the candidate lists, so they need not be calculated again at every start.
+ * The file carries the checksum of the TSPLIB file it was made from.
+ * <p>
+ * Layout, little endian: magic, version, checksum, dimension, metric, candidates per node, flags, the name and the
+ * node names as UTF-8, padding to 8 bytes, the x and y coordinates, the candidate lists and the lower half of the
+ * distance matrix row by row.
+ * @author nieh
+ */
+public class BinaryInstance {
+    private static final int MAGIC = 0x42505354;
+    /**
+     * Version 2 has the distances of the att problems without the early truncation of version 1, version 3 the
+     * candidate lists of the geographical problems by their distances on the earth.
+     */
+    private static final int VERSION = 3;
+    private static final int HAS_DISTANCES = 1;
+
+    @Getter
+    private final long checksum;
+
+    @Getter
+    private final String name;
+
+    @Getter
+    private final Metric metric;
+
+    @Getter
+    private final String[] names;
+
+    @Getter
+    private final double[] xs;
+
+    @Getter
+    private final double[] ys;
+
+    /**
+     * The mapped distances or null if the file has none.
+     */
+    @Getter
+    private final DistanceCache distances;
+
+    /**
+     * The candidate lists or null if the file has none.
+     */
+    @Getter
+    private final CandidateLists candidates;
+
+    private BinaryInstance(ByteBuffer buffer){
+        if(buffer.getInt() != MAGIC || buffer.getInt() != VERSION){
+            throw new IllegalArgumentException("Not a binary problem of version " + VERSION);
+        }
+
+        checksum = buffer.getLong();
+        int dimension = buffer.getInt();
+        metric = Metric.values()[buffer.getInt()];
+        int k = buffer.getInt();
+        int flags = buffer.getInt();
+        name = readString(buffer);
+        names = readString(buffer).split("\n", -1);
+        buffer.position(align(buffer.position()));
+
+        xs = new double[dimension];
+        ys = new double[dimension];
+        buffer.asDoubleBuffer().get(xs);
+        buffer.position(buffer.position() + 8 * dimension);
+        buffer.asDoubleBuffer().get(ys);
+        buffer.position(buffer.position() + 8 * dimension);
+
+        if(k > 0){
+            int[] lists = new int[dimension * k];
+            buffer.asIntBuffer().get(lists);
+            buffer.position(buffer.position() + 4 * lists.length);
+            candidates = new CandidateLists(k, lists);
+        } else {
+            candidates = null;
+        }
+
+        if((flags & HAS_DISTANCES) != 0){
+            IntBuffer triangle = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            distances = new MappedDistanceCache(dimension, triangle);
+        } else {
+            distances = null;
+        }
+    }
+
+    /**
+     * Maps the file into memory, the mapping stays valid after the file is closed.
+     * @param file The binary file.
+     * @return The problem.
+     * @throws IOException If the file can not be read.
+     * @throws IllegalArgumentException If the file is not a binary problem.
+     */
+    public static BinaryInstance read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            return new BinaryInstance(buffer);
+        }
+    }
+
+    /**
+     * Reads only the header of the file to get the checksum of its TSPLIB file.
+     * @param file The binary file.
+     * @return The checksum or -1 if the file is missing or not a binary problem.
+     */
+    public static long readChecksum(Path file){
+        if(!Files.isRegularFile(file)){
+            return -1;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+            while(header.hasRemaining() && channel.read(header) >= 0){
+                // read the whole header
+            }
+            header.flip();
+            if(header.remaining() < 16 || header.getInt() != MAGIC || header.getInt() != VERSION){
+                return -1;
+            }
+
+            return header.getLong();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Writes the problem to a temporary file and moves it into place, so other processes never see a partly
+     * written file. The distances are only written if they fit into one mapping.
+     * @param file The binary file.
+     * @param checksum The checksum of the TSPLIB file of the problem.
+     * @param problem The problem, the distances and candidate lists are written if they are calculated.
+     * @throws IOException If the file can not be written.
+     */
+    public static void write(Path file, long checksum, TSP problem) throws IOException {
+        write(file, checksum, problem, true);
+    }
+
+    /**
+     * Writes the problem like {@link #write(Path, long, TSP)}, the distances may be left out.
+     * @param file The binary file.
+     * @param checksum The checksum of the TSPLIB file of the problem.
+     * @param problem The problem.
+     * @param withDistances False to leave out the distances, they are needed if the metric has no coordinates.
+     * @throws IOException If the file can not be written.
+     */
+    public static void write(Path file, long checksum, TSP problem, boolean withDistances) throws IOException {
+        List<Node> nodes = problem.getNodes();
+        int dimension = nodes.size();
+        CandidateLists candidates = problem.getCandidates();
+        int k = (candidates != null)? candidates.size() : 0;
+        byte[] name = problem.getName().getBytes(StandardCharsets.UTF_8);
+
+        StringBuilder nodeNames = new StringBuilder();
+        for (Node node : nodes) {
+            if(nodeNames.length() > 0){
+                nodeNames.append('\n');
+            }
+            nodeNames.append(node.getName());
+        }
+        byte[] names = nodeNames.toString().getBytes(StandardCharsets.UTF_8);
+
+        long size = align(32 + 4 + name.length + 4 + names.length) + 16L * dimension + 4L * dimension * k;
+        long triangle = (long) dimension * (dimension - 1) / 2;
+        DistanceCache distances = (withDistances)? problem.getDistances() : null;
+        if(distances != null && size + 4 * triangle > Integer.MAX_VALUE){
+            if(!problem.getMetric().hasCoordinates()){
+                throw new IllegalArgumentException("The distances of " + problem.getName() + " are too big for the binary format");
+            }
+            distances = null;
+        }
+        if(distances != null){
+            size += 4 * triangle;
+        }
+
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+                buffer.putInt(MAGIC).putInt(VERSION).putLong(checksum);
+                buffer.putInt(dimension).putInt(problem.getMetric().ordinal()).putInt(k);
+                buffer.putInt((distances != null)? HAS_DISTANCES : 0);
+                buffer.putInt(name.length).put(name);
+                buffer.putInt(names.length).put(names);
+                buffer.position(align(buffer.position()));
+
+                for (Node node : nodes) {
+                    buffer.putDouble(node.getX());
+                }
+                for (Node node : nodes) {
+                    buffer.putDouble(node.getY());
+                }
+                for(int node=0; node<dimension; node++){
+                    for(int rank=0; rank<k; rank++){
+                        buffer.putInt(candidates.get(node, rank));
+                    }
+                }
+                if(distances != null){
+                    for(int i=1; i<dimension; i++){
+                        for(int j=0; j<i; j++){
+                            buffer.putInt(distances.distance(i, j));
+                        }
+                    }
+                }
+
+                buffer.force();
+            }
+
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Calculates the CRC32 checksum of a file.
+     * @param file The file, usually a TSPLIB file.
+     * @return The checksum.
+     * @throws IOException If the file can not be read.
+     */
+    public static long checksum(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while((read = in.read(buffer)) >= 0){
+                crc.update(buffer, 0, read);
+            }
+        }
+
+        return crc.getValue();
+    }
+
+    private static String readString(ByteBuffer buffer){
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int align(int position){
+        return (position + 7) & ~7;
+    }
+}
@@ -0,0 +1,183 @@
+package de.metal_land.tsp;
+
+/**
+ * Holds for every node the k nearest other nodes, the candidates for the neighborhood moves.
+ * @author nieh
+ */
+public class CandidateLists {
+    private final int k;
+    private final int[] candidates;
+
+    /**
+     * Builds the candidate lists with the help of the spatial index, the candidates are ordered by their distance.
+     * The metric has to be planar, see {@link Metric#isPlanar()}.
+     * @param tree The spatial index of the nodes.
+     * @param distances The distances between the nodes.
+     * @param k The number of candidates per node.
+     */
+    public CandidateLists(KdTree tree, DistanceCache distances, int k){
+        this.k = Math.min(k, tree.size() - 1);
+        this.candidates = new int[tree.size() * this.k];
+
+        for(int node=0; node<tree.size(); node++){
+            int[] nearest = tree.kNearest(node, this.k);
+
+            // the tree works with the euclidean distance, so order them by the distance of the problem
+            for(int i=1; i<nearest.length; i++){
+                int candidate = nearest[i];
+                int distance = distances.distance(node, candidate);
+                int j = i - 1;
+                while(j >= 0 && distances.distance(node, nearest[j]) > distance){
+                    nearest[j + 1] = nearest[j];
+                    j--;
+                }
+                nearest[j + 1] = candidate;
+            }
+
+            System.arraycopy(nearest, 0, candidates, node * this.k, this.k);
+        }
+    }
+
+    /**
+     * Builds the candidate lists by looking at all distances, for problems without coordinates.
+     * @param distances The distances between the nodes.
+     * @param k The number of candidates per node.
+     */
+    public CandidateLists(DistanceCache distances, int k){
+        this.k = Math.min(k, distances.size() - 1);
+        this.candidates = new int[distances.size() * this.k];
+
+        int[] nearestDistances = new int[this.k];
+        for(int node=0; node<distances.size() && this.k > 0; node++){
+            scan(distances, node, nearestDistances);
+        }
+    }
+
+    /**
+     * Uses the given candidates.
+     * @param k The number of candidates per node.
+     * @param candidates The candidates of all nodes one after another, the array is not copied.
+     */
+    public CandidateLists(int k, int[] candidates){
+        this.k = k;
+        this.candidates = candidates;
+    }
+
+    /**
+     * Finds the candidates of one node by looking at all distances.
+     * @param nearestDistances Space for the distances of the candidates.
+     */
+    private void scan(DistanceCache distances, int node, int[] nearestDistances){
+        int offset = node * k;
+        int count = 0;
+
+        // insertion into the sorted list of the nearest nodes found so far
+        for(int other=0; other<distances.size(); other++){
+            if(other == node){
+                continue;
+            }
+            int distance = distances.distance(node, other);
+            if(count == k && nearestDistances[count - 1] <= distance){
+                continue;
+            }
+
+            int i = (count < k)? count++ : count - 1;
+            while(i > 0 && nearestDistances[i - 1] > distance){
+                nearestDistances[i] = nearestDistances[i - 1];
+                candidates[offset + i] = candidates[offset + i - 1];
+                i--;
+            }
+            nearestDistances[i] = distance;
+            candidates[offset + i] = other;
+        }
+    }
+
+    /**
+     * Creates the candidate lists after the distances of one node changed or a node was added with the last
+     * index. Only the lists of the node and of the nodes it enters or leaves are calculated again, which takes
+     * linear time for each of them.
+     * @param distances The changed distances.
+     * @param k The number of candidates per node, if it differs from the current one all lists are calculated.
+     * @param node The index of the changed or added node.
+     * @return The new candidate lists.
+     */
+    CandidateLists update(DistanceCache distances, int k, int node){
+        int size = distances.size();
+        k = Math.min(k, size - 1);
+        if(k != this.k){
+            return new CandidateLists(distances, k);
+        }
+
+        CandidateLists updated = new CandidateLists(k, new int[size * k]);
+        System.arraycopy(candidates, 0, updated.candidates, 0, Math.min(candidates.length, updated.candidates.length));
+        int[] nearestDistances = new int[k];
+        for(int other=0; other<size && k > 0; other++){
+            int offset = other * k;
+            boolean contained = false;
+            for(int i=0; i<k && other != node && offset < candidates.length; i++){
+                contained |= candidates[offset + i] == node;
+            }
+
+            // the node may have left the list or may enter it
+            if(other == node || offset >= candidates.length || contained
+                    || distances.distance(other, node) < distances.distance(other, candidates[offset + k - 1])){
+                updated.scan(distances, other, nearestDistances);
+            }
+        }
+
+        return updated;
+    }
+
+    /**
+     * Creates the candidate lists after a node was removed and the last node took its index, see
+     * {@link DynamicDistanceCache#remove(int)}. Only the lists that contained the removed node are calculated
+     * again.
+     * @param distances The distances without the removed node.
+     * @param k The number of candidates per node, if it differs from the current one all lists are calculated.
+     * @param removed The index of the removed node.
+     * @return The new candidate lists.
+     */
+    CandidateLists remove(DistanceCache distances, int k, int removed){
+        int size = distances.size();
+        k = Math.min(k, size - 1);
+        if(k != this.k){
+            return new CandidateLists(distances, k);
+        }
+
+        CandidateLists updated = new CandidateLists(k, new int[size * k]);
+        int[] nearestDistances = new int[k];
+        for(int node=0; node<size && k > 0; node++){
+            // the list of the last node moves to the index of the removed one
+            int source = ((node == removed)? size : node) * k;
+            boolean lost = false;
+            for(int i=0; i<k; i++){
+                int candidate = candidates[source + i];
+                lost |= candidate == removed;
+                updated.candidates[node * k + i] = (candidate == size)? removed : candidate;
+            }
+
+            if(lost){
+                updated.scan(distances, node, nearestDistances);
+            }
+        }
+
+        return updated;
+    }
+
+    /**
+     * @return The number of candidates per node.
+     */
+    public int size(){
+        return k;
+    }
+
+    /**
+     * Returns a candidate of the node.
+     * @param node The index of the node.
+     * @param rank The rank of the candidate, 0 is the nearest.
+     * @return The index of the candidate.
+     */
+    public int get(int node, int rank){
+        return candidates[node * k + rank];
+    }
+}
@@ -0,0 +1,219 @@
+package de.metal_land.tsp;
+
+import lombok.Getter;
+import lombok.extern.java.Log;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+
+/**
+ * The saved state of a tabu search, so a restarted process can continue the search, see {@link TSP#resume(Path)}.
+ * <p>
+ * Layout, big endian values of {@link DataOutputStream}: magic, version, the problem name, the number of nodes,
+ * the seed of the random numbers, the finished iterations, the iterations since the last new best route, the best
+ * and the current tour as node indices and the tabu list of {@link TabuList#save(DataOutput)}.
+ * @author nieh
+ */
+public class Checkpoint {
+    private static final int MAGIC = 0x54535043;
+    private static final int VERSION = 1;
+
+    @Getter
+    private final String name;
+
+    @Getter
+    private final long seed;
+
+    @Getter
+    private final long iterations;
+
+    @Getter
+    private final int stagnation;
+
+    /**
+     * The node indices of the best tour.
+     */
+    @Getter
+    private final int[] best;
+
+    /**
+     * The node indices of the current tour of the search.
+     */
+    @Getter
+    private final int[] current;
+
+    @Getter
+    private final TabuList tabuList;
+
+    private Checkpoint(DataInputStream in) throws IOException {
+        if(in.readInt() != MAGIC || in.readInt() != VERSION){
+            throw new IllegalArgumentException("Not a checkpoint of version " + VERSION);
+        }
+
+        name = in.readUTF();
+        int size = in.readInt();
+        seed = in.readLong();
+        iterations = in.readLong();
+        stagnation = in.readInt();
+        best = readTour(in, size);
+        current = readTour(in, size);
+        tabuList = TabuList.restore(in);
+    }
+
+    /**
+     * Reads a checkpoint.
+     * @param file The file to read.
+     * @return The checkpoint or null if the file does not exist.
+     * @throws IOException If the file can not be read.
+     */
+    public static Checkpoint read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return new Checkpoint(in);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Encodes the state of a search, this copies the state so the search may go on while it is written.
+     * @param problem The problem of the search.
+     * @param seed The seed the random numbers of the search are derived from.
+     * @param best The best route.
+     * @param search The search.
+     * @return The checkpoint in the file format.
+     */
+    public static byte[] encode(TSP problem, long seed, Route best, TabuSearch search){
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8 * problem.getNodes().size() + 1024);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(problem.getName());
+            out.writeInt(problem.getNodes().size());
+            out.writeLong(seed);
+            out.writeLong(search.getIterations());
+            out.writeInt(search.getStagnation());
+            writeTour(out, best);
+            writeTour(out, search.getCurrent());
+            search.getTabuList().save(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static void writeTour(DataOutputStream out, Route route) throws IOException {
+        List<Node> nodes = route.getRoute();
+        for (Node node : nodes) {
+            out.writeInt(node.getIndex());
+        }
+    }
+
+    private static int[] readTour(DataInputStream in, int size) throws IOException {
+        boolean[] visited = new boolean[size];
+        int[] tour = new int[size];
+        for(int i=0; i<size; i++){
+            tour[i] = in.readInt();
+            if(tour[i] < 0 || tour[i] >= size || visited[tour[i]]){
+                throw new IllegalArgumentException("Invalid node in checkpoint: " + tour[i]);
+            }
+            visited[tour[i]] = true;
+        }
+
+        return tour;
+    }
+
+    /**
+     * Writes checkpoints on a background thread, so the search is not stalled by the disk. If the search is
+     * faster than the disk, only the newest pending checkpoint is written. Every file is written to a temporary
+     * file first and then moved over the old one, so a crash leaves either the old or the new checkpoint.
+     */
+    @Log
+    public static class Writer implements Closeable {
+        private final Path file;
+        private final AtomicReference<byte[]> pending = new AtomicReference<>();
+        private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Checkpoint");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        /**
+         * @param file The file of the checkpoints.
+         */
+        public Writer(Path file){
+            this.file = file;
+        }
+
+        /**
+         * Queues a checkpoint, a queued checkpoint which is not written yet is replaced.
+         * @param checkpoint The checkpoint of {@link Checkpoint#encode(TSP, long, Route, TabuSearch)}.
+         */
+        public void write(byte[] checkpoint){
+            if(pending.getAndSet(checkpoint) == null){
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        byte[] next = pending.getAndSet(null);
+                        if(next != null){
+                            writeFile(next);
+                        }
+                    }
+                });
+            }
+        }
+
+        private void writeFile(byte[] checkpoint){
+            try {
+                Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+                try {
+                    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                        ByteBuffer buffer = ByteBuffer.wrap(checkpoint);
+                        while(buffer.hasRemaining()){
+                            channel.write(buffer);
+                        }
+                        channel.force(true);
+                    }
+
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            } catch (IOException e) {
+                // the search goes on, the next checkpoint may succeed
+                log.log(Level.WARNING, "Checkpoint could not be written", e);
+            }
+        }
+
+        /**
+         * Writes the pending checkpoint and waits until it is on the disk.
+         */
+        @Override
+        public void close(){
+            executor.shutdown();
+            try {
+                while(!executor.awaitTermination(1, TimeUnit.SECONDS)){
+                    log.fine("Waiting for the checkpoint");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package de.metal_land.tsp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The heuristics to construct a first route, as stage they keep the best route of the problem if it is shorter.
+ * @author nieh
+ */
+public enum Construction implements Stage {
+    /**
+     * Always goes to the nearest node not visited yet. Every start takes O(n log n) time with the spatial index,
+     * without it O(n^2), then only a sample of the start nodes is tried by default.
+     */
+    NEAREST_NEIGHBOR(0) {
+        @Override
+        public Route build(TSP problem, int start) {
+            List<Node> nodes = problem.getNodes();
+            RemainingNodes remaining = problem.remainingNodes();
+            List<Node> routeList = new ArrayList<>(nodes.size());
+
+            int lastNode = start;
+            remaining.remove(lastNode);
+            routeList.add(nodes.get(lastNode));
+            while(remaining.size() > 0){
+                lastNode = remaining.nearest(lastNode);
+                remaining.remove(lastNode);
+                routeList.add(nodes.get(lastNode));
+            }
+
+            return new Route(routeList, problem.getDistances());
+        }
+    },
+
+    /**
+     * Adds the shortest edges from the candidate lists as long as no node gets a third edge and no cycle is closed,
+     * the remaining fragments are joined by their nearest ends.
+     */
+    GREEDY_EDGE(1) {
+        @Override
+        public Route build(TSP problem, int start) {
+            return greedyEdge(problem);
+        }
+    },
+
+    /**
+     * Visits the nodes in the order of a Hilbert curve through the plane.
+     */
+    SPACE_FILLING_CURVE(1) {
+        @Override
+        public Route build(TSP problem, int start) {
+            return spaceFillingCurve(problem);
+        }
+    },
+
+    /**
+     * Inserts the node next, which increases the distance the least. Every start takes O(n^2) time, so by default
+     * only a sample of the start nodes is tried.
+     */
+    CHEAPEST_INSERTION(Construction.SAMPLED_START_NODES) {
+        @Override
+        public Route build(TSP problem, int start) {
+            return cheapestInsertion(problem, start);
+        }
+    },
+
+    /**
+     * Inserts the node farthest from the route next, at the position where it increases the distance the least.
+     * Every start takes O(n^2) time, so by default only a sample of the start nodes is tried.
+     */
+    FARTHEST_INSERTION(Construction.SAMPLED_START_NODES) {
+        @Override
+        public Route build(TSP problem, int start) {
+            return farthestInsertion(problem, start);
+        }
+    };
+
+    /**
+     * The number of start nodes tried by default if every start takes O(n^2) time.
+     */
+    public static final int SAMPLED_START_NODES = 32;
+
+    /**
+     * The number of start nodes tried if the problem does not set one, 0 for all nodes and 1 if the result does not
+     * depend on the start node.
+     */
+    private final int defaultStartNodes;
+
+    Construction(int defaultStartNodes){
+        this.defaultStartNodes = defaultStartNodes;
+    }
+
+    /**
+     * @return True if the result depends on the start node, so several start nodes should be tried.
+     */
+    public boolean isMultiStart(){
+        return defaultStartNodes != 1;
+    }
+
+    /**
+     * @return The number of start nodes tried if the problem does not set one, 0 for all nodes.
+     */
+    public int getDefaultStartNodes(){
+        return defaultStartNodes;
+    }
+
+    /**
+     * Constructs a route. The distances and the spatial index of the problem have to be calculated.
+     * @param problem The problem.
+     * @param start The index of the start node, ignored if the heuristic does not depend on it.
+     * @return The new route.
+     */
+    public abstract Route build(TSP problem, int start);
+
+    @Override
+    public void run(TSP problem) {
+        problem.construct(this);
+    }
+
+    private static Route greedyEdge(TSP problem){
+        List<Node> nodes = problem.getNodes();
+        DistanceCache distances = problem.getDistances();
+        CandidateLists candidates = problem.getCandidates();
+        int size = nodes.size();
+
+        // sort the candidate edges by their length, the edge index is kept in the lower bits
+        int[] from = new int[size * candidates.size()];
+        int[] to = new int[from.length];
+        long[] edges = new long[from.length];
+        int count = 0;
+        for(int node=0; node<size; node++){
+            for(int rank=0; rank<candidates.size(); rank++){
+                from[count] = node;
+                to[count] = candidates.get(node, rank);
+                edges[count] = ((long) distances.distance(node, to[count]) << 32) | count;
+                count++;
+            }
+        }
+        Arrays.sort(edges, 0, count);
+
+        int[] neighbors = new int[2 * size];
+        Arrays.fill(neighbors, -1);
+        int[] parents = new int[size];
+        for(int i=0; i<size; i++){
+            parents[i] = i;
+        }
+
+        for(int i=0; i<count; i++){
+            int edge = (int) edges[i];
+            int a = from[edge];
+            int b = to[edge];
+            if(neighbors[2 * a + 1] >= 0 || neighbors[2 * b + 1] >= 0){
+                continue;
+            }
+
+            int rootA = find(parents, a);
+            int rootB = find(parents, b);
+            if(rootA == rootB){
+                continue;
+            }
+            parents[rootA] = rootB;
+            neighbors[2 * a + ((neighbors[2 * a] < 0)? 0 : 1)] = b;
+            neighbors[2 * b + ((neighbors[2 * b] < 0)? 0 : 1)] = a;
+        }
+
+        // join the fragments, only the ends of the fragments stay in the spatial index
+        RemainingNodes ends = problem.remainingNodes();
+        int current = -1;
+        for(int node=0; node<size; node++){
+            if(neighbors[2 * node + 1] >= 0){
+                ends.remove(node);
+            } else if(current < 0){
+                current = node;
+            }
+        }
+
+        List<Node> routeList = new ArrayList<>(size);
+        while(current >= 0){
+            ends.remove(current);
+
+            int previous = -1;
+            int node = current;
+            while(true){
+                routeList.add(nodes.get(node));
+                int next = (neighbors[2 * node] != previous)? neighbors[2 * node] : neighbors[2 * node + 1];
+                if(next < 0){
+                    break;
+                }
+                previous = node;
+                node = next;
+            }
+
+            ends.remove(node);
+            current = ends.nearest(node);
+        }
+
+        return new Route(routeList, distances);
+    }
+
+    private static int find(int[] parents, int node){
+        while(parents[node] != node){
+            parents[node] = parents[parents[node]];
+            node = parents[node];
+        }
+
+        return node;
+    }
+
+    private static Route spaceFillingCurve(TSP problem){
+        List<Node> nodes = problem.getNodes();
+        double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (Node node : nodes) {
+            minX = Math.min(minX, node.getX());
+            maxX = Math.max(maxX, node.getX());
+            minY = Math.min(minY, node.getY());
+            maxY = Math.max(maxY, node.getY());
+        }
+
+        int order = 1 << 16;
+        double scale = (order - 1) / Math.max(1, Math.max(maxX - minX, maxY - minY));
+
+        // the curve index in the upper bits, the node index in the lower bits
+        long[] keys = new long[nodes.size()];
+        for (Node node : nodes) {
+            int x = (int) ((node.getX() - minX) * scale);
+            int y = (int) ((node.getY() - minY) * scale);
+            keys[node.getIndex()] = (hilbertIndex(order, x, y) << 21) | node.getIndex();
+        }
+        Arrays.sort(keys);
+
+        List<Node> routeList = new ArrayList<>(nodes.size());
+        for (long key : keys) {
+            routeList.add(nodes.get((int) (key & ((1 << 21) - 1))));
+        }
+
+        return new Route(routeList, problem.getDistances());
+    }
+
+    /**
+     * Calculates the position of the point on the Hilbert curve filling the square of the given order.
+     */
+    private static long hilbertIndex(int order, int x, int y){
+        long index = 0;
+        for(int s = order / 2; s > 0; s /= 2){
+            int rx = ((x & s) > 0)? 1 : 0;
+            int ry = ((y & s) > 0)? 1 : 0;
+            index += (long) s * s * ((3 * rx) ^ ry);
+
+            if(ry == 0){
+                if(rx == 1){
+                    x = s - 1 - x;
+                    y = s - 1 - y;
+                }
+                int swap = x;
+                x = y;
+                y = swap;
+            }
+        }
+
+        return index;
+    }
+
+    private static Route cheapestInsertion(TSP problem, int start){
+        DistanceCache distances = problem.getDistances();
+        int size = problem.getNodes().size();
+        int[] next = new int[size];
+        boolean[] inserted = new boolean[size];
+
+        // for every node outside the route the cheapest edge to insert it into, given by the edge start
+        int[] bestEdge = new int[size];
+        int[] bestCost = new int[size];
+
+        next[start] = start;
+        inserted[start] = true;
+        for(int node=0; node<size; node++){
+            bestEdge[node] = start;
+            bestCost[node] = 2 * distances.distance(start, node);
+        }
+
+        for(int step=1; step<size; step++){
+            int node = -1;
+            for(int i=0; i<size; i++){
+                if(!inserted[i] && (node < 0 || bestCost[i] < bestCost[node])){
+                    node = i;
+                }
+            }
+
+            int a = bestEdge[node];
+            int b = next[a];
+            next[a] = node;
+            next[node] = b;
+            inserted[node] = true;
+
+            for(int i=0; i<size; i++){
+                if(inserted[i]){
+                    continue;
+                }
+                if(bestEdge[i] == a){
+                    // the edge is gone, search the whole route again
+                    findCheapestEdge(distances, next, start, i, bestEdge, bestCost);
+                } else {
+                    updateCheapestEdge(distances, next, a, i, bestEdge, bestCost);
+                    updateCheapestEdge(distances, next, node, i, bestEdge, bestCost);
+                }
+            }
+        }
+
+        return toRoute(problem, next, start);
+    }
+
+    private static void findCheapestEdge(DistanceCache distances, int[] next, int start, int node,
+                                         int[] bestEdge, int[] bestCost){
+        bestCost[node] = Integer.MAX_VALUE;
+        int a = start;
+        do {
+            updateCheapestEdge(distances, next, a, node, bestEdge, bestCost);
+            a = next[a];
+        } while(a != start);
+    }
+
+    private static void updateCheapestEdge(DistanceCache distances, int[] next, int a, int node,
+                                           int[] bestEdge, int[] bestCost){
+        int b = next[a];
+        int cost = distances.distance(a, node) + distances.distance(node, b) - distances.distance(a, b);
+        if(cost < bestCost[node]){
+            bestCost[node] = cost;
+            bestEdge[node] = a;
+        }
+    }
+
+    private static Route farthestInsertion(TSP problem, int start){
+        DistanceCache distances = problem.getDistances();
+        int size = problem.getNodes().size();
+        int[] next = new int[size];
+        boolean[] inserted = new boolean[size];
+        int[] routeDistance = new int[size];
+
+        next[start] = start;
+        inserted[start] = true;
+        for(int node=0; node<size; node++){
+            routeDistance[node] = distances.distance(start, node);
+        }
+
+        for(int step=1; step<size; step++){
+            int node = -1;
+            for(int i=0; i<size; i++){
+                if(!inserted[i] && (node < 0 || routeDistance[i] > routeDistance[node])){
+                    node = i;
+                }
+            }
+
+            int bestEdge = start;
+            int bestCost = Integer.MAX_VALUE;
+            int a = start;
+            do {
+                int b = next[a];
+                int cost = distances.distance(a, node) + distances.distance(node, b) - distances.distance(a, b);
+                if(cost < bestCost){
+                    bestCost = cost;
+                    bestEdge = a;
+                }
+                a = b;
+            } while(a != start);
+
+            next[node] = next[bestEdge];
+            next[bestEdge] = node;
+            inserted[node] = true;
+
+            for(int i=0; i<size; i++){
+                if(!inserted[i]){
+                    routeDistance[i] = Math.min(routeDistance[i], distances.distance(node, i));
+                }
+            }
+        }
+
+        return toRoute(problem, next, start);
+    }
+
+    /**
+     * Creates the route from the successor of every node.
+     */
+    private static Route toRoute(TSP problem, int[] next, int start){
+        List<Node> nodes = problem.getNodes();
+        List<Node> routeList = new ArrayList<>(nodes.size());
+        int node = start;
+        do {
+            routeList.add(nodes.get(node));
+            node = next[node];
+        } while(node != start);
+
+        return new Route(routeList, problem.getDistances());
+    }
+}
@@ -0,0 +1,132 @@
+package de.metal_land.tsp;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * The names and coordinates of all nodes of a problem as arrays indexed by the node index, the {@link Node}s are
+ * views on them. Distances are calculated from the arrays, many at once by the {@link DistanceKernel}.
+ * @author nieh
+ */
+public class Coordinates {
+    @Getter
+    private final Metric metric;
+
+    private String[] names;
+    private double[] xs;
+    private double[] ys;
+    private int size;
+
+    /**
+     * Counts the changes by {@link #add(String, double, double)}, {@link #set(int, double, double)} and
+     * {@link #remove(int)}.
+     */
+    @Getter
+    private volatile int version = 0;
+
+    /**
+     * @param metric The distance function.
+     * @param names The names of the nodes.
+     * @param xs The x coordinates.
+     * @param ys The y coordinates, the arrays are not copied.
+     */
+    public Coordinates(Metric metric, String[] names, double[] xs, double[] ys){
+        this.metric = metric;
+        this.names = names;
+        this.xs = xs;
+        this.ys = ys;
+        this.size = xs.length;
+    }
+
+    /**
+     * @return The number of nodes.
+     */
+    public int size(){
+        return size;
+    }
+
+    public String getName(int index){
+        return names[index];
+    }
+
+    public double getX(int index){
+        return xs[index];
+    }
+
+    public double getY(int index){
+        return ys[index];
+    }
+
+    /**
+     * @param from The index of the first node.
+     * @param to The index of the second node.
+     * @return The distance between the nodes.
+     */
+    public int distance(int from, int to){
+        return metric.distance(xs[from], ys[from], xs[to], ys[to]);
+    }
+
+    /**
+     * Calculates the distances from one node to a range of nodes.
+     * @param from The index of the node.
+     * @param start The index of the first node of the range.
+     * @param end The index after the last node of the range.
+     * @param out Receives the distance to the node start + i at offset + i.
+     * @param offset The first position written in out.
+     */
+    public void row(int from, int start, int end, int[] out, int offset){
+        DistanceKernel.get().row(metric, xs, ys, from, start, end - start, out, offset);
+    }
+
+    /**
+     * @return A copy with the same version, which does not see later changes.
+     */
+    Coordinates copy(){
+        Coordinates copy = new Coordinates(metric, Arrays.copyOf(names, size), Arrays.copyOf(xs, size),
+                Arrays.copyOf(ys, size));
+        copy.version = version;
+        return copy;
+    }
+
+    /**
+     * Adds a node with the next free index.
+     * @return The index of the node.
+     */
+    int add(String name, double x, double y){
+        if(size == xs.length){
+            int capacity = Math.max(16, size + (size >> 2));
+            names = Arrays.copyOf(names, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+        }
+
+        names[size] = name;
+        xs[size] = x;
+        ys[size] = y;
+        version++;
+        return size++;
+    }
+
+    /**
+     * Moves a node to new coordinates.
+     */
+    void set(int index, double x, double y){
+        xs[index] = x;
+        ys[index] = y;
+        version++;
+    }
+
+    /**
+     * Removes a node, the last node takes its index.
+     */
+    void remove(int index){
+        int last = size - 1;
+        names[index] = names[last];
+        xs[index] = xs[last];
+        ys[index] = ys[last];
+        names[last] = null;
+        size--;
+        version++;
+    }
+}
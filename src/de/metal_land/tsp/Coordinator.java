@@ -0,0 +1,289 @@
+package de.metal_land.tsp;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.Setter;
+import lombok.extern.java.Log;
+
+import java.io.*;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Lets {@link Worker} processes improve the best route, as stage of a {@link Pipeline} after a construction.
+ * Every worker connecting to the port gets the problem and the best route, the tours streamed back by the workers
+ * are offered to the problem and every new best route is sent to all other workers. The stage ends by the time
+ * limit of the stop condition, the target distance or {@link TSP#cancel()}, then all workers are stopped. Every
+ * received tour counts as iteration. Every worker is served by a thread of its own, the stage returns after all of
+ * them ended, so no tour is offered after the stage.
+ * The messages are described by {@link Protocol}.
+ * @author nieh
+ */
+@Log
+@Data
+public class Coordinator implements Stage {
+    /**
+     * The time to wait for new workers before the stop condition is checked again, in milliseconds.
+     */
+    private static final int ACCEPT_TIMEOUT = 100;
+
+    /**
+     * The port to listen on, 0 for any free port.
+     */
+    private int port = 4711;
+
+    /**
+     * The search run by the workers.
+     */
+    private TSP.Improvement improvement = TSP.Improvement.LIN_KERNIGHAN;
+
+    /**
+     * The time in milliseconds after which a worker sends its best tour and takes the best tour of all workers.
+     */
+    private int roundTime = 1000;
+
+    /**
+     * The port actually listened on, 0 if the stage is not running.
+     */
+    @Setter(AccessLevel.NONE)
+    private volatile int localPort = 0;
+
+    public static void main(String args[]){
+        if(args.length < 3){
+            System.err.println("Usage: Coordinator <tsp file> <port> <seconds>");
+            System.exit(1);
+        }
+
+        TSP problem = new TSP();
+        problem.readCached(new File(args[0]));
+        problem.calculateDistances();
+        problem.getStopCondition().setTimeLimit(Long.parseLong(args[2]) * 1000);
+
+        Coordinator coordinator = new Coordinator();
+        coordinator.setPort(Integer.parseInt(args[1]));
+        problem.setPipeline(new Pipeline(problem.getConstruction(), coordinator));
+        problem.solve();
+
+        log.info(String.format("Distance of Route after %s: %d", problem.getPipeline(), problem.getBestRoute().getDistance()));
+        log.info(problem.getMetrics().snapshot().toString());
+    }
+
+    @Override
+    public void run(TSP problem) {
+        if(problem.getBestRoute() == null){
+            problem.construct();
+        }
+
+        long start = System.nanoTime();
+        problem.getMetrics().searchStarted();
+        // the workers which got the problem, and all started connections with their threads
+        List<Connection> connections = new CopyOnWriteArrayList<>();
+        List<Connection> started = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        AtomicInteger tours = new AtomicInteger();
+        try (ServerSocket server = new ServerSocket(port)) {
+            server.setSoTimeout(ACCEPT_TIMEOUT);
+            localPort = server.getLocalPort();
+            log.info(String.format("Waiting for workers on port %d", localPort));
+            byte[] instance = instanceBytes(problem);
+
+            // counts every worker ever connected, so no two workers get the same seed
+            int workers = 0;
+            while(!problem.isStopped(start, tours.get(), 0)){
+                try {
+                    Socket socket = server.accept();
+                    Connection connection = new Connection(socket, problem, connections, tours, instance, workers++);
+                    Thread thread = new Thread(connection, "Worker " + socket.getRemoteSocketAddress());
+                    started.add(connection);
+                    threads.add(thread);
+                    thread.start();
+                } catch (SocketTimeoutException e) {
+                    // check the stop condition again
+                } catch (IOException e) {
+                    log.log(Level.WARNING, "Worker could not be started", e);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            localPort = 0;
+            for (Connection connection : started) {
+                connection.stop();
+            }
+            join(threads);
+        }
+        problem.getMetrics().phaseFinished(SolverMetrics.Phase.IMPROVEMENT, start);
+    }
+
+    /**
+     * Waits for the threads of the connections, they end as their sockets are closed.
+     */
+    private static void join(List<Thread> threads){
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return The problem in the binary format, with the distances only if they can not be calculated from the
+     * coordinates, so the workers calculate them.
+     */
+    private static byte[] instanceBytes(TSP problem) throws IOException {
+        Path file = Files.createTempFile("tsp", ".bin");
+        try {
+            BinaryInstance.write(file, 0, problem, !problem.getMetric().hasCoordinates());
+            return Files.readAllBytes(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Coordinator(" + improvement + ")";
+    }
+
+    /**
+     * The connection to one worker, it sends the problem and reads the tours of the worker on its own thread.
+     */
+    private class Connection implements Runnable {
+        private final Socket socket;
+        private final TSP problem;
+        private final List<Connection> connections;
+        private final AtomicInteger tours;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        /**
+         * The problem in the binary format.
+         */
+        private final byte[] instance;
+
+        /**
+         * The number of the worker, used to derive its seed.
+         */
+        private final int id;
+
+        Connection(Socket socket, TSP problem, List<Connection> connections, AtomicInteger tours, byte[] instance,
+                   int id) throws IOException {
+            this.socket = socket;
+            this.problem = problem;
+            this.connections = connections;
+            this.tours = tours;
+            this.instance = instance;
+            this.id = id;
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        /**
+         * Sends the problem, the settings and the best route.
+         */
+        private void sendProblem() throws IOException {
+            Long seed = problem.getSeed();
+            synchronized (out) {
+                out.writeByte(Protocol.PROBLEM);
+                out.writeInt(Protocol.MAGIC);
+                out.writeInt(Protocol.VERSION);
+                out.writeInt(instance.length);
+                out.write(instance);
+                out.writeByte(improvement.ordinal());
+                out.writeBoolean(seed != null);
+                out.writeLong((seed != null)? seed + id : 0);
+                out.writeInt(roundTime);
+                Protocol.writeTour(out, problem.getBestRoute());
+                out.flush();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                // new best tours are only sent to workers which got the problem
+                sendProblem();
+                connections.add(this);
+                while(true){
+                    byte type = in.readByte();
+                    if(type != Protocol.TOUR){
+                        throw new ProtocolException("Unexpected message: " + type);
+                    }
+
+                    Route route = Protocol.readTour(in, problem);
+                    tours.incrementAndGet();
+                    if(offer(route)){
+                        for (Connection connection : connections) {
+                            if(connection != this){
+                                connection.send(route);
+                            }
+                        }
+                    }
+                }
+            } catch (EOFException e) {
+                // the worker closed the connection
+            } catch (IOException e) {
+                if(!socket.isClosed()){
+                    log.log(Level.WARNING, "Connection to worker failed", e);
+                }
+            } finally {
+                connections.remove(this);
+                close();
+            }
+        }
+
+        /**
+         * @return True if the route is the new best route.
+         */
+        private boolean offer(Route route){
+            synchronized (problem) {
+                problem.offerBestRoute(route);
+                return problem.getBestRoute() == route;
+            }
+        }
+
+        void send(Route route){
+            try {
+                synchronized (out) {
+                    Protocol.writeTour(out, route);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void stop(){
+            try {
+                synchronized (out) {
+                    out.writeByte(Protocol.STOP);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // the worker is gone already
+            }
+            close();
+        }
+
+        private void close(){
+            try {
+                socket.close();
+            } catch (IOException e) {
+                log.log(Level.FINE, "Closing the connection failed", e);
+            }
+        }
+    }
+}
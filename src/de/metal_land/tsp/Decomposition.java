@@ -0,0 +1,473 @@
+package de.metal_land.tsp;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.java.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Solves very large problems in parts. The nodes are split by recursive bisection at the median of the wider
+ * coordinate until every cluster has at most clusterSize nodes. The clusters are visited in the order of a route
+ * through their centers, every cluster is entered and left at the nodes closest to its neighbors. The paths through
+ * the clusters are solved in parallel as problems of their own with the improvement of the problem, and joined
+ * into one route. Finally the seams between the clusters are repaired: the nodes around every seam are improved by
+ * Lin-Kernighan as path with fixed ends. The distance matrices of the parts never exceed the cluster size.
+ * The parts stop when the problem is cancelled or the end of its solve is reached. The time left is shared by the
+ * clusters, so the clusters take about as long as the limit, the seams are repaired in the time left after them.
+ * @author nieh
+ */
+@Log
+@Data
+public class Decomposition implements Stage {
+    /**
+     * The maximal number of nodes of a cluster.
+     */
+    private int clusterSize = 1000;
+
+    /**
+     * The number of nodes around a seam that are repaired, at most half of every cluster is used.
+     */
+    private int seamWindow = 100;
+
+    /**
+     * The time limit of the repair of one seam in milliseconds, it is shortened to the share of the seam of the
+     * time left.
+     */
+    private long repairTime = 1000;
+
+    @Override
+    public void run(TSP problem) {
+        long start = System.nanoTime();
+        List<Node> nodes = problem.getNodes();
+        if(!problem.getMetric().hasCoordinates()){
+            throw new IllegalArgumentException("The decomposition needs coordinates, the metric is " + problem.getMetric());
+        }
+
+        int[] indices = new int[nodes.size()];
+        for(int i=0; i<indices.length; i++){
+            indices[i] = i;
+        }
+        List<int[]> clusters = new ArrayList<>();
+        bisect(nodes, indices, 0, indices.length, clusters);
+        if(clusters.size() == 1){
+            new Pipeline(problem.getConstruction(), problem.getImprovement()).run(problem);
+            return;
+        }
+        log.info(String.format("Solving %d clusters of %s", clusters.size(), problem.getName()));
+
+        int count = clusters.size();
+        int[] clusterOrder = orderClusters(problem, clusters);
+        int[][] ordered = new int[count][];
+        for(int c=0; c<count; c++){
+            ordered[c] = clusters.get(clusterOrder[c]);
+        }
+        int[] entries = new int[count];
+        int[] exits = new int[count];
+        chooseEnds(problem, ordered, entries, exits);
+
+        int[] order = new int[nodes.size()];
+        int[] seams = new int[count];
+        List<RecursiveAction> tasks = new ArrayList<>(count);
+        int position = 0;
+        for(int c=0; c<count; c++){
+            seams[c] = position;
+            tasks.add(new ClusterTask(problem, ordered[c], entries[c], exits[c], order, position, count));
+            position += ordered[c].length;
+        }
+        invokeAll(problem, tasks);
+
+        tasks.clear();
+        long seamTime = Math.min(repairTime, share(problem, problem.remainingTime(), count));
+        for(int c=0; c<count && seamTime > 0; c++){
+            int before = ordered[(c + count - 1) % count].length;
+            int after = ordered[c].length;
+            int half = seamWindow / 2;
+            tasks.add(new SeamTask(problem, order, seams[c] - Math.min(half, before / 2),
+                    Math.min(half, before / 2) + Math.min(half, after / 2), seamTime));
+        }
+        invokeAll(problem, tasks);
+
+        List<Node> routeList = new ArrayList<>(order.length);
+        for (int node : order) {
+            routeList.add(nodes.get(node));
+        }
+        problem.offerBestRoute(new Route(routeList, problem.getDistances()));
+        problem.getMetrics().phaseFinished(SolverMetrics.Phase.IMPROVEMENT, start);
+    }
+
+    private static void invokeAll(TSP problem, final List<RecursiveAction> tasks){
+        if(tasks.isEmpty()){
+            return;
+        }
+
+        problem.getPool().invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+    }
+
+    /**
+     * Splits the nodes of the range at the median of the wider coordinate until the clusters are small enough,
+     * the clusters are added in the order of the splits.
+     */
+    private void bisect(List<Node> nodes, int[] indices, int from, int to, List<int[]> clusters){
+        if(to - from <= Math.max(1, clusterSize)){
+            clusters.add(Arrays.copyOfRange(indices, from, to));
+            return;
+        }
+
+        double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for(int i=from; i<to; i++){
+            Node node = nodes.get(indices[i]);
+            minX = Math.min(minX, node.getX());
+            maxX = Math.max(maxX, node.getX());
+            minY = Math.min(minY, node.getY());
+            maxY = Math.max(maxY, node.getY());
+        }
+
+        boolean byX = maxX - minX >= maxY - minY;
+        int middle = (from + to) >>> 1;
+        select(nodes, indices, from, to, middle, byX);
+        bisect(nodes, indices, from, middle, clusters);
+        bisect(nodes, indices, middle, to, clusters);
+    }
+
+    /**
+     * Reorders the range so the node at the position k is the one of this rank by the coordinate, with no larger
+     * coordinate before it and no smaller one after it.
+     */
+    private static void select(List<Node> nodes, int[] indices, int from, int to, int k, boolean byX){
+        int left = from;
+        int right = to - 1;
+        while(left < right){
+            double pivot = coordinate(nodes, indices[(left + right) >>> 1], byX);
+            int i = left;
+            int j = right;
+            while(i <= j){
+                while(coordinate(nodes, indices[i], byX) < pivot){
+                    i++;
+                }
+                while(coordinate(nodes, indices[j], byX) > pivot){
+                    j--;
+                }
+                if(i <= j){
+                    int swap = indices[i];
+                    indices[i] = indices[j];
+                    indices[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+
+            if(k <= j){
+                right = j;
+            } else if(k >= i){
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static double coordinate(List<Node> nodes, int index, boolean byX){
+        Node node = nodes.get(index);
+        return byX? node.getX() : node.getY();
+    }
+
+    /**
+     * Creates the problem of a part of the nodes with the settings of the whole problem.
+     * @param problem The whole problem.
+     * @param name The name of the part.
+     * @param clusters The number of parts solved side by side, they share the time limit.
+     */
+    private static TSP subProblem(TSP problem, String name, int clusters){
+        TSP part = new TSP();
+        part.partOf(problem);
+        part.setConstruction(problem.getConstruction());
+        part.setImprovement(problem.getImprovement());
+        part.setCandidateListSize(problem.getCandidateListSize());
+        part.setParallelism(1);
+        part.sharePool(problem);
+        if(problem.getSeed() != null){
+            part.setSeed(problem.getSeed() + name.hashCode());
+        }
+
+        StopCondition limits = problem.getStopCondition();
+        StopCondition partLimits = part.getStopCondition();
+        partLimits.setMaxIterations(limits.getMaxIterations());
+        partLimits.setMaxStagnation(limits.getMaxStagnation());
+        long time = Math.min(problem.remainingTime(), (limits.getTimeLimit() > 0)? limits.getTimeLimit() : Long.MAX_VALUE);
+        if(time < Long.MAX_VALUE){
+            partLimits.setTimeLimit(Math.max(1, share(problem, time, clusters)));
+        }
+
+        return part;
+    }
+
+    /**
+     * @return The time of one of the parts solved side by side on the pool of the problem.
+     */
+    private static long share(TSP problem, long time, int parts){
+        if(time == Long.MAX_VALUE){
+            return time;
+        }
+
+        int parallelism = Math.max(1, problem.getParallelism());
+        return time * Math.min(parallelism, parts) / parts;
+    }
+
+    /**
+     * Solves the path through one cluster from its entry to its exit and writes it into the order.
+     */
+    @AllArgsConstructor
+    private static class ClusterTask extends RecursiveAction {
+        private final TSP problem;
+        private final int[] cluster;
+        private final int entry;
+        private final int exit;
+        private final int[] order;
+        private final int position;
+        private final int clusters;
+
+        @Override
+        protected void compute() {
+            // start with the nearest neighbor path from the entry
+            DistanceCache distances = problem.getDistances();
+            int size = cluster.length;
+            int[] path = new int[size];
+            int count = 0;
+            path[count++] = entry;
+            if(exit != entry){
+                path[size - 1] = exit;
+            }
+            boolean[] used = new boolean[size];
+            for(int i=0; i<size; i++){
+                used[i] = cluster[i] == entry || cluster[i] == exit;
+            }
+            while(count < size - 1){
+                int nearest = -1;
+                for(int i=0; i<size; i++){
+                    if(!used[i] && (nearest == -1
+                            || distances.distance(path[count - 1], cluster[i]) < distances.distance(path[count - 1], cluster[nearest]))){
+                        nearest = i;
+                    }
+                }
+                used[nearest] = true;
+                path[count++] = cluster[nearest];
+            }
+
+            int[] solved = solvePath(problem, path, problem.getName() + "-" + position, clusters,
+                    problem.getImprovement(), -1);
+            System.arraycopy(solved, 0, order, position, size);
+        }
+    }
+
+    /**
+     * @return The order of the clusters along a route through their centers.
+     */
+    private int[] orderClusters(TSP problem, List<int[]> clusters){
+        int count = clusters.size();
+        int[] order = new int[count];
+        for(int c=0; c<count; c++){
+            order[c] = c;
+        }
+        if(count <= 3){
+            return order;
+        }
+
+        String[] names = new String[count];
+        double[] xs = new double[count];
+        double[] ys = new double[count];
+        for(int c=0; c<count; c++){
+            names[c] = String.valueOf(c);
+            double[] center = center(problem.getNodes(), clusters.get(c));
+            xs[c] = center[0];
+            ys[c] = center[1];
+        }
+
+        String name = problem.getName() + "-centers";
+        TSP centers = subProblem(problem, name, 1);
+        centers.setImprovement(TSP.Improvement.LIN_KERNIGHAN);
+        centers.getStopCondition().setMaxStagnation(count);
+        centers.readFromCoordinates(name, problem.getMetric(), names, xs, ys);
+        centers.calculateDistances();
+        centers.solve();
+
+        int i = 0;
+        for (Node node : centers.getBestRoute().getRoute()) {
+            order[i++] = node.getIndex();
+        }
+
+        return order;
+    }
+
+    private static double[] center(List<Node> nodes, int[] cluster){
+        double x = 0, y = 0;
+        for (int index : cluster) {
+            x += nodes.get(index).getX();
+            y += nodes.get(index).getY();
+        }
+
+        return new double[]{x / cluster.length, y / cluster.length};
+    }
+
+    /**
+     * Chooses the nodes where the route enters and leaves every cluster, each link between two neighboring
+     * clusters is a short edge between them. Clusters of more than one node are left at another node than entered.
+     */
+    private static void chooseEnds(TSP problem, int[][] clusters, int[] entries, int[] exits){
+        int count = clusters.length;
+        int[] link = link(problem, clusters[count - 1], clusters[0], -1, -1);
+        exits[count - 1] = link[0];
+        entries[0] = link[1];
+        for(int c=0; c + 1<count; c++){
+            link = link(problem, clusters[c], clusters[c + 1], entries[c], (c + 1 == count - 1)? exits[count - 1] : -1);
+            exits[c] = link[0];
+            entries[c + 1] = link[1];
+        }
+    }
+
+    /**
+     * Finds a short edge from the cluster a to the cluster b: the node of a nearest to the center of b, the node
+     * of b nearest to it and again the node of a nearest to that one.
+     * @return The node in a and the node in b.
+     */
+    private static int[] link(TSP problem, int[] a, int[] b, int excludedA, int excludedB){
+        List<Node> nodes = problem.getNodes();
+        double[] center = center(nodes, b);
+        int fromA = -1;
+        for (int node : a) {
+            if((node != excludedA || a.length == 1)
+                    && (fromA == -1 || squaredDistance(nodes.get(node), center) < squaredDistance(nodes.get(fromA), center))){
+                fromA = node;
+            }
+        }
+        int toB = nearest(problem.getDistances(), b, fromA, excludedB);
+        fromA = nearest(problem.getDistances(), a, toB, excludedA);
+
+        return new int[]{fromA, toB};
+    }
+
+    private static int nearest(DistanceCache distances, int[] cluster, int target, int excluded){
+        int nearest = -1;
+        for (int node : cluster) {
+            if((node != excluded || cluster.length == 1)
+                    && (nearest == -1 || distances.distance(target, node) < distances.distance(target, nearest))){
+                nearest = node;
+            }
+        }
+
+        return nearest;
+    }
+
+    private static double squaredDistance(Node node, double[] point){
+        double dx = node.getX() - point[0];
+        double dy = node.getY() - point[1];
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Improves the path of the nodes around a seam with Lin-Kernighan, its first and last node stay in place.
+     */
+    @AllArgsConstructor
+    private class SeamTask extends RecursiveAction {
+        private final TSP problem;
+        private final int[] order;
+        private final int first;
+        private final int length;
+        private final long timeLimit;
+
+        @Override
+        protected void compute() {
+            if(length < 8 || problem.isCancelled() || problem.isPastDeadline()){
+                return;
+            }
+
+            int size = order.length;
+            int[] path = new int[length];
+            for(int i=0; i<length; i++){
+                path[i] = order[((first + i) % size + size) % size];
+            }
+
+            int[] solved = solvePath(problem, path, problem.getName() + "-seam-" + first, 1,
+                    TSP.Improvement.LIN_KERNIGHAN, timeLimit);
+            for(int i=0; i<length; i++){
+                order[((first + i) % size + size) % size] = solved[i];
+            }
+        }
+    }
+
+    /**
+     * Improves a path whose first and last node stay in place. The path is solved as round trip of its own
+     * problem, whose closing edge is so short that no improvement removes it.
+     * @param problem The whole problem.
+     * @param path The global indices of the nodes in the order of the path.
+     * @param name The name of the part.
+     * @param clusters The number of parts solved side by side.
+     * @param improvement The search to improve the path.
+     * @param timeLimit The time limit in milliseconds, if negative the share of the time limit of the problem.
+     * @return The improved path, or the given one if it can not be improved.
+     */
+    private static int[] solvePath(TSP problem, int[] path, String name, int clusters, TSP.Improvement improvement,
+                                   long timeLimit){
+        int length = path.length;
+        if(length < 4){
+            return path;
+        }
+
+        DistanceCache distances = problem.getDistances();
+        int[] matrix = new int[length * length];
+        long pathLength = 0;
+        for(int i=0; i<length; i++){
+            for(int j=0; j<length; j++){
+                matrix[i * length + j] = distances.distance(path[i], path[j]);
+            }
+            if(i > 0){
+                pathLength += matrix[(i - 1) * length + i];
+            }
+        }
+        if(pathLength >= Integer.MAX_VALUE / 2){
+            return path;
+        }
+        int fixed = (int) -(pathLength + 1);
+        matrix[length - 1] = fixed;
+        matrix[(length - 1) * length] = fixed;
+
+        TSP part = subProblem(problem, name, clusters);
+        part.setImprovement(improvement);
+        if(timeLimit >= 0){
+            part.getStopCondition().setTimeLimit(timeLimit);
+            part.getStopCondition().setMaxStagnation(length);
+        }
+        part.readFromMatrix(name, length, matrix);
+        part.calculateDistances();
+        part.offerBestRoute(new Route(new ArrayList<>(part.getNodes()), part.getDistances()));
+        part.setPipeline(new Pipeline(improvement, new ExactSolver()));
+        part.solve();
+
+        // read the round trip from the first node to the last one without the closing edge
+        List<Node> route = part.getBestRoute().getRoute();
+        int start = 0;
+        while(route.get(start).getIndex() != 0){
+            start++;
+        }
+        boolean reversed = route.get((start + 1) % length).getIndex() == length - 1;
+        if(!reversed && route.get((start + length - 1) % length).getIndex() != length - 1){
+            return path;
+        }
+
+        int[] solved = new int[length];
+        for(int i=0; i<length; i++){
+            solved[i] = path[route.get(((reversed)? start - i + length : start + i) % length).getIndex()];
+        }
+
+        return solved;
+    }
+}
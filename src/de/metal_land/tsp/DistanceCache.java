@@ -0,0 +1,78 @@
+package de.metal_land.tsp;
+
+/**
+ * Gives access to the distances between the nodes of a problem. The nodes are addressed by their index.
+ * @author nieh
+ */
+public interface DistanceCache {
+
+    /**
+     * @return The number of nodes covered by the cache.
+     */
+    public int size();
+
+    /**
+     * Returns the distance between two nodes.
+     * @param from The index of the first node.
+     * @param to The index of the second node.
+     * @return The distance.
+     */
+    public int distance(int from, int to);
+
+    /**
+     * The available implementations of the cache.
+     */
+    public enum Type {
+        /**
+         * A full n*n matrix, the fastest lookup but the highest memory usage.
+         */
+        MATRIX {
+            @Override
+            public DistanceCache create(Coordinates coordinates) {
+                return new MatrixDistanceCache(coordinates);
+            }
+        },
+
+        /**
+         * Stores only one half of the symmetric matrix.
+         */
+        TRIANGULAR {
+            @Override
+            public DistanceCache create(Coordinates coordinates) {
+                return new TriangularDistanceCache(coordinates);
+            }
+        },
+
+        /**
+         * Calculates every distance on demand, for problems too big to precompute.
+         */
+        LAZY {
+            @Override
+            public DistanceCache create(Coordinates coordinates) {
+                return new LazyDistanceCache(coordinates);
+            }
+        };
+
+        /**
+         * Creates a new cache for the given nodes.
+         * @param coordinates The coordinates of the nodes of the problem.
+         * @return The new cache.
+         */
+        public abstract DistanceCache create(Coordinates coordinates);
+
+        /**
+         * Returns the type that fits the given number of nodes best.
+         * @param size The number of nodes.
+         * @return The suitable type.
+         */
+        public static Type suitableFor(int size){
+            if(size <= 5000){
+                return MATRIX;
+            } else if(size <= 10000){
+                return TRIANGULAR;
+            }
+
+            return LAZY;
+        }
+    }
+}
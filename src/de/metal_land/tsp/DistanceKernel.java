@@ -0,0 +1,91 @@
+package de.metal_land.tsp;
+
+import lombok.extern.java.Log;
+
+import java.util.logging.Level;
+
+/**
+ * Calculates many distances over coordinate arrays at once. The vectorised kernel of the vector profile is used
+ * if it is on the class path and the JVM runs with --add-modules jdk.incubator.vector, else the scalar loops.
+ * Both give exactly the distances of {@link Metric#distance(double, double, double, double)}.
+ * @author nieh
+ */
+@Log
+public abstract class DistanceKernel {
+    private static final String VECTOR_KERNEL = "de.metal_land.tsp.VectorDistanceKernel";
+    private static final DistanceKernel INSTANCE = load();
+
+    /**
+     * @return The fastest available kernel.
+     */
+    public static DistanceKernel get(){
+        return INSTANCE;
+    }
+
+    private static DistanceKernel load(){
+        try {
+            DistanceKernel kernel = (DistanceKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+            log.fine("Using the kernel " + kernel);
+            return kernel;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.log(Level.FINE, "The vector kernel is not available", e);
+            return new Scalar();
+        }
+    }
+
+    /**
+     * Calculates the distances from one point to a range of points.
+     * @param metric The distance function.
+     * @param xs The x coordinates.
+     * @param ys The y coordinates.
+     * @param from The index of the point to measure from.
+     * @param start The index of the first point of the range.
+     * @param count The number of points of the range.
+     * @param out Receives the distance to the point start + i at offset + i.
+     * @param offset The first position written in out.
+     */
+    public abstract void row(Metric metric, double[] xs, double[] ys, int from, int start, int count, int[] out, int offset);
+
+    /**
+     * Calculates the distances of pairs of points, the point i of the first array to the point i of the second.
+     * The arrays may be the same with different offsets, for example for the edges of a route.
+     * @param metric The distance function.
+     * @param ax The x coordinates of the first points.
+     * @param ay The y coordinates of the first points.
+     * @param aOffset The index of the first point in ax and ay.
+     * @param bx The x coordinates of the second points.
+     * @param by The y coordinates of the second points.
+     * @param bOffset The index of the first point in bx and by.
+     * @param count The number of pairs.
+     * @param out Receives the distance of the pair i at i.
+     */
+    public abstract void pairs(Metric metric, double[] ax, double[] ay, int aOffset,
+                               double[] bx, double[] by, int bOffset, int count, int[] out);
+
+    /**
+     * The plain loops, used for every metric the vector kernel does not cover.
+     */
+    public static class Scalar extends DistanceKernel {
+        @Override
+        public void row(Metric metric, double[] xs, double[] ys, int from, int start, int count, int[] out, int offset) {
+            double x = xs[from];
+            double y = ys[from];
+            for(int i=0; i<count; i++){
+                out[offset + i] = metric.distance(x, y, xs[start + i], ys[start + i]);
+            }
+        }
+
+        @Override
+        public void pairs(Metric metric, double[] ax, double[] ay, int aOffset,
+                          double[] bx, double[] by, int bOffset, int count, int[] out) {
+            for(int i=0; i<count; i++){
+                out[i] = metric.distance(ax[aOffset + i], ay[aOffset + i], bx[bOffset + i], by[bOffset + i]);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Scalar";
+        }
+    }
+}
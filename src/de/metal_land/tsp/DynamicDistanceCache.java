@@ -0,0 +1,93 @@
+package de.metal_land.tsp;
+
+/**
+ * Stores all distances as rows that can grow and shrink, so nodes can be added, removed and moved in linear time
+ * instead of calculating the whole matrix again. Removing a node moves the last node to its index.
+ * @author nieh
+ */
+public class DynamicDistanceCache implements DistanceCache {
+    private int size;
+    private int[][] rows;
+
+    /**
+     * Copies the distances of another cache.
+     * @param distances The distances to copy.
+     */
+    public DynamicDistanceCache(DistanceCache distances){
+        size = distances.size();
+        rows = new int[capacityFor(size)][];
+        for(int i=0; i<size; i++){
+            rows[i] = new int[capacityFor(size)];
+            for(int j=0; j<size; j++){
+                rows[i][j] = distances.distance(i, j);
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int distance(int from, int to) {
+        return rows[from][to];
+    }
+
+    /**
+     * Adds a node with the next free index.
+     * @param distances The distances from the new node to all other nodes.
+     */
+    public void add(int[] distances){
+        if(size == rows.length){
+            int[][] grown = new int[capacityFor(size + 1)][];
+            System.arraycopy(rows, 0, grown, 0, size);
+            rows = grown;
+        }
+
+        for(int i=0; i<size; i++){
+            if(rows[i].length == size){
+                int[] grown = new int[capacityFor(size + 1)];
+                System.arraycopy(rows[i], 0, grown, 0, size);
+                rows[i] = grown;
+            }
+            rows[i][size] = distances[i];
+        }
+
+        rows[size] = new int[capacityFor(size + 1)];
+        System.arraycopy(distances, 0, rows[size], 0, size);
+        size++;
+    }
+
+    /**
+     * Changes the distances of a node, for example after it was moved.
+     * @param index The index of the node.
+     * @param distances The distances from the node to all other nodes.
+     */
+    public void set(int index, int[] distances){
+        for(int i=0; i<size; i++){
+            rows[i][index] = (i == index)? 0 : distances[i];
+            rows[index][i] = rows[i][index];
+        }
+    }
+
+    /**
+     * Removes a node, the last node takes its index.
+     * @param index The index of the node.
+     */
+    public void remove(int index){
+        int last = size - 1;
+        if(index != last){
+            rows[index] = rows[last];
+            for(int i=0; i<last; i++){
+                rows[i][index] = rows[i][last];
+            }
+        }
+        rows[last] = null;
+        size--;
+    }
+
+    private static int capacityFor(int size){
+        return Math.max(16, size + (size >> 2));
+    }
+}
@@ -0,0 +1,91 @@
+package de.metal_land.tsp;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A small set of the best routes shared by parallel searches. Routes are taken without locks, an offered route
+ * replaces the worst one under a short lock, so the check for a route of the same distance and the exchange are
+ * one step. Offers are rare compared to the steps of the searches.
+ * Only one route of every distance is kept, so the pool does not fill up with copies of the same route.
+ * @author nieh
+ */
+public class ElitePool {
+    private final AtomicReferenceArray<Route> slots;
+
+    /**
+     * @param capacity The maximal number of routes, at least 1.
+     */
+    public ElitePool(int capacity){
+        slots = new AtomicReferenceArray<>(Math.max(1, capacity));
+    }
+
+    /**
+     * @return The maximal number of routes.
+     */
+    public int capacity(){
+        return slots.length();
+    }
+
+    /**
+     * Adds the route if the pool is not full or it is better than the worst route in the pool.
+     * @param route The route to add.
+     * @return True if the route was added.
+     */
+    public synchronized boolean offer(Route route){
+        int worst = -1;
+        Route worstRoute = null;
+        for(int i=0; i<slots.length(); i++){
+            Route slot = slots.get(i);
+            if(slot == null){
+                if(worst < 0 || worstRoute != null){
+                    worst = i;
+                    worstRoute = null;
+                }
+            } else if(slot.getDistance().equals(route.getDistance())){
+                return false;
+            } else if(worst < 0 || worstRoute != null && slot.compareTo(worstRoute) > 0){
+                worst = i;
+                worstRoute = slot;
+            }
+        }
+
+        if(worstRoute != null && route.compareTo(worstRoute) >= 0){
+            return false;
+        }
+        slots.set(worst, route);
+        return true;
+    }
+
+    /**
+     * @return The best route in the pool or null if it is empty.
+     */
+    public Route best(){
+        Route best = null;
+        for(int i=0; i<slots.length(); i++){
+            Route slot = slots.get(i);
+            if(slot != null && (best == null || slot.compareTo(best) < 0)){
+                best = slot;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Picks a random route of the pool.
+     * @param random The random source.
+     * @return The route or null if the pool is empty.
+     */
+    public Route sample(SplittableRandom random){
+        int start = random.nextInt(slots.length());
+        for(int i=0; i<slots.length(); i++){
+            Route slot = slots.get((start + i) % slots.length());
+            if(slot != null){
+                return slot;
+            }
+        }
+
+        return null;
+    }
+}
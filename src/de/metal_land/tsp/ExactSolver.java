@@ -0,0 +1,434 @@
+package de.metal_land.tsp;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Solves small problems exactly and polishes the routes of larger ones. The core finds the shortest path from a
+ * start node through a set of inner nodes to an end node: by the dynamic programming of Held and Karp over the
+ * subsets of the inner nodes if there are at most maxDpSize of them, else by branch and bound.
+ * As stage a problem of at most maxDpSize + 1 nodes is solved at once, the route of a larger problem is polished
+ * by solving windows of windowSize consecutive nodes with fixed ends, in parallel and with shifting offsets until
+ * no window improves or the time of the solve is over.
+ * @author nieh
+ */
+@Data
+public class ExactSolver implements Stage {
+    /**
+     * The maximal number of inner nodes solved by dynamic programming, it takes 2^n * n ints of memory.
+     */
+    private int maxDpSize = 16;
+
+    /**
+     * The number of nodes of a polished window, including its fixed ends.
+     */
+    private int windowSize = 10;
+
+    /**
+     * The maximal number of search nodes of the branch and bound, the best path found so far is used if it is
+     * reached.
+     */
+    private long maxBranchNodes = 10000000;
+
+    @Override
+    public void run(TSP problem) {
+        long start = System.nanoTime();
+        if(problem.getNodes().size() <= maxDpSize + 1){
+            problem.offerBestRoute(solve(problem));
+        } else {
+            Route route = problem.takeStartRoute();
+            if(route == null){
+                problem.construct();
+                route = problem.getBestRoute();
+            }
+            Tour tour = new Tour(route);
+            if(polish(tour, problem) < 0){
+                problem.offerBestRoute(tour.toRoute());
+            }
+        }
+        problem.getMetrics().phaseFinished(SolverMetrics.Phase.IMPROVEMENT, start);
+    }
+
+    /**
+     * Finds the optimal route of the whole problem, the distances have to be calculated.
+     * @param problem The problem, small enough for {@link #shortestPath(DistanceCache, int, int[], int)}.
+     * @return The optimal route.
+     */
+    public Route solve(TSP problem){
+        List<Node> nodes = problem.getNodes();
+        int[] inner = new int[Math.max(0, nodes.size() - 1)];
+        for(int i=0; i<inner.length; i++){
+            inner[i] = i + 1;
+        }
+
+        List<Node> routeList = new ArrayList<>(nodes.size());
+        if(!nodes.isEmpty()){
+            routeList.add(nodes.get(0));
+            for (int node : shortestPath(problem.getDistances(), 0, inner, 0)) {
+                routeList.add(nodes.get(node));
+            }
+        }
+
+        return new Route(routeList, problem.getDistances());
+    }
+
+    /**
+     * Polishes the tour by solving windows of windowSize nodes exactly, the windows of one pass do not overlap
+     * and are solved in parallel. The next pass shifts the windows by half their size, the polishing ends after
+     * a full shift without improvement, or if the problem is stopped.
+     * @param tour The tour to polish.
+     * @param problem The problem, its pool solves the windows.
+     * @return The change of the distance, negative if the tour got shorter.
+     */
+    public int polish(Tour tour, TSP problem){
+        int size = tour.size();
+        int window = Math.min(windowSize, size);
+        if(window < 4){
+            return 0;
+        }
+
+        int initial = tour.getDistance();
+        int[] order = new int[size];
+        int shift = Math.max(1, window / 2);
+        int offset = 0;
+        int unchanged = 0;
+        while(unchanged < (window + shift - 1) / shift && !problem.isCancelled() && !problem.isPastDeadline()){
+            for(int i=0; i<size; i++){
+                order[i] = tour.get(i);
+            }
+
+            int before = tour.getDistance();
+            // windows overlap by their ends only, the ends stay fixed
+            int windows = (size - 1) / (window - 1);
+            problem.getPool().invoke(new WindowTask(tour.getDistances(), order, offset, window, 0, windows));
+            tour.setOrder(order);
+
+            unchanged = (tour.getDistance() < before)? 0 : unchanged + 1;
+            offset = (offset + shift) % size;
+        }
+
+        return tour.getDistance() - initial;
+    }
+
+    /**
+     * Solves a range of windows, every window starts at the position offset + index * (window - 1) of the order.
+     */
+    @AllArgsConstructor
+    private class WindowTask extends RecursiveAction {
+        private final DistanceCache distances;
+        private final int[] order;
+        private final int offset;
+        private final int window;
+        private final int from;
+        private final int to;
+
+        @Override
+        protected void compute() {
+            if(to - from <= 1){
+                for(int index=from; index<to; index++){
+                    solveWindow(offset + index * (window - 1));
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new WindowTask(distances, order, offset, window, from, middle),
+                    new WindowTask(distances, order, offset, window, middle, to));
+        }
+
+        private void solveWindow(int first){
+            int size = order.length;
+            int[] inner = new int[window - 2];
+            int before = 0;
+            int last = order[first % size];
+            for(int i=0; i<inner.length; i++){
+                inner[i] = order[(first + 1 + i) % size];
+                before += distances.distance(last, inner[i]);
+                last = inner[i];
+            }
+            int end = order[(first + window - 1) % size];
+            before += distances.distance(last, end);
+
+            int[] path = shortestPath(distances, order[first % size], inner, end);
+            if(length(distances, order[first % size], path, end) < before){
+                for(int i=0; i<path.length; i++){
+                    order[(first + 1 + i) % size] = path[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the shortest path from the start through all inner nodes to the end, the start and end may be the
+     * same node for a round trip.
+     * @param distances The distances between the nodes.
+     * @param start The index of the first node.
+     * @param inner The indices of the nodes to visit, in the order of a known path.
+     * @param end The index of the last node.
+     * @return The inner nodes in the order of the shortest path.
+     */
+    public int[] shortestPath(DistanceCache distances, int start, int[] inner, int end){
+        int m = inner.length;
+        if(m <= 1){
+            return inner.clone();
+        }
+
+        int[][] d = new int[m + 2][m + 2];
+        int[] local = new int[m + 2];
+        local[0] = start;
+        System.arraycopy(inner, 0, local, 1, m);
+        local[m + 1] = end;
+        for(int i=0; i<m + 2; i++){
+            for(int j=0; j<m + 2; j++){
+                d[i][j] = distances.distance(local[i], local[j]);
+            }
+        }
+
+        int[] path = (m <= maxDpSize)? dynamicProgramming(d, m) : branchAndBound(d, m);
+        int[] result = new int[m];
+        for(int i=0; i<m; i++){
+            result[i] = local[path[i]];
+        }
+
+        return result;
+    }
+
+    /**
+     * The dynamic programming of Held and Karp on the local distances, 0 is the start, 1 to m the inner nodes
+     * and m + 1 the end.
+     * @return The local indices of the inner nodes in their best order.
+     */
+    private static int[] dynamicProgramming(int[][] d, int m){
+        int full = 1 << m;
+        // best[mask * m + j] is the shortest path from the start through the inner nodes of mask ending at j
+        int[] best = new int[full * m];
+        Arrays.fill(best, Integer.MAX_VALUE);
+        for(int j=0; j<m; j++){
+            best[(1 << j) * m + j] = d[0][j + 1];
+        }
+
+        for(int mask=1; mask<full; mask++){
+            for(int j=0; j<m; j++){
+                int length = best[mask * m + j];
+                if(length == Integer.MAX_VALUE){
+                    continue;
+                }
+                for(int k=0; k<m; k++){
+                    if((mask & (1 << k)) == 0){
+                        int index = (mask | (1 << k)) * m + k;
+                        int extended = length + d[j + 1][k + 1];
+                        if(extended < best[index]){
+                            best[index] = extended;
+                        }
+                    }
+                }
+            }
+        }
+
+        int mask = full - 1;
+        int last = 0;
+        for(int j=1; j<m; j++){
+            if(best[mask * m + j] + d[j + 1][m + 1] < best[mask * m + last] + d[last + 1][m + 1]){
+                last = j;
+            }
+        }
+
+        int[] path = new int[m];
+        for(int position=m - 1; position>=0; position--){
+            path[position] = last + 1;
+            int previous = mask ^ (1 << last);
+            if(previous == 0){
+                break;
+            }
+            for(int k=0; k<m; k++){
+                if((previous & (1 << k)) != 0 && best[previous * m + k] + d[k + 1][last + 1] == best[mask * m + last]){
+                    mask = previous;
+                    last = k;
+                    break;
+                }
+            }
+        }
+
+        return path;
+    }
+
+    /**
+     * A depth first branch and bound on the local distances, starting with the given order as best path. A
+     * partial path is cut if its length plus the minimum spanning tree of the rest is not shorter than the best path.
+     * @return The local indices of the inner nodes in their best order.
+     */
+    private int[] branchAndBound(int[][] d, int m){
+        if(m > 62){
+            throw new IllegalArgumentException("Too many nodes for the branch and bound: " + m);
+        }
+
+        // the inner nodes ordered by their distance from every node
+        int[][] nearest = new int[m + 1][];
+        for(int i=0; i<=m; i++){
+            Integer[] sorted = new Integer[m];
+            for(int k=0; k<m; k++){
+                sorted[k] = k + 1;
+            }
+            final int[] row = d[i];
+            Arrays.sort(sorted, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return Integer.compare(row[a], row[b]);
+                }
+            });
+            nearest[i] = new int[m];
+            for(int k=0; k<m; k++){
+                nearest[i][k] = sorted[k];
+            }
+        }
+
+        BranchAndBound search = new BranchAndBound(d, m, nearest, maxBranchNodes);
+        search.run();
+        return search.bestPath;
+    }
+
+    /**
+     * The state of one branch and bound search.
+     */
+    private static class BranchAndBound {
+        private final int[][] d;
+        private final int m;
+        private final int[][] nearest;
+        private final long maxNodes;
+        private final int[] path;
+        private final int[] bestPath;
+        private final int[] treeNodes;
+        private final int[] keys;
+        private int bestLength;
+        private long nodes = 0;
+
+        BranchAndBound(int[][] d, int m, int[][] nearest, long maxNodes){
+            this.d = d;
+            this.m = m;
+            this.nearest = nearest;
+            this.maxNodes = maxNodes;
+            this.path = new int[m];
+            this.bestPath = new int[m];
+            for(int i=0; i<m; i++){
+                bestPath[i] = i + 1;
+            }
+            this.bestLength = length(d, 0, bestPath, m + 1);
+            this.treeNodes = new int[m + 1];
+            this.keys = new int[m + 1];
+        }
+
+        void run(){
+            search(0, 0, 0, (1L << m) - 1);
+        }
+
+        /**
+         * @param depth The number of inner nodes on the path.
+         * @param current The last node of the path.
+         * @param length The length of the path.
+         * @param remaining The inner nodes not on the path, bit i - 1 for the node i.
+         */
+        private void search(int depth, int current, int length, long remaining){
+            if(++nodes > maxNodes){
+                return;
+            }
+            if(remaining == 0){
+                int complete = length + d[current][m + 1];
+                if(complete < bestLength){
+                    bestLength = complete;
+                    System.arraycopy(path, 0, bestPath, 0, m);
+                }
+                return;
+            }
+            if(length + bound(current, remaining) >= bestLength){
+                return;
+            }
+
+            for (int next : nearest[current]) {
+                if((remaining & (1L << (next - 1))) != 0){
+                    int extended = length + d[current][next];
+                    if(extended < bestLength){
+                        path[depth] = next;
+                        search(depth + 1, next, extended, remaining & ~(1L << (next - 1)));
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return The length of the minimum spanning tree of the current node, the remaining nodes and the end,
+         * the rest of the path is one of the spanning trees.
+         */
+        private int bound(int current, long remaining){
+            int count = 0;
+            treeNodes[count++] = m + 1;
+            for(int v=1; v<=m; v++){
+                if((remaining & (1L << (v - 1))) != 0){
+                    treeNodes[count++] = v;
+                }
+            }
+
+            // Prim's algorithm starting at the current node
+            for(int i=0; i<count; i++){
+                keys[i] = d[current][treeNodes[i]];
+            }
+            int length = 0;
+            for(int added=0; added<count; added++){
+                int next = added;
+                for(int i=added + 1; i<count; i++){
+                    if(keys[i] < keys[next]){
+                        next = i;
+                    }
+                }
+                length += keys[next];
+                swap(added, next);
+
+                int node = treeNodes[added];
+                for(int i=added + 1; i<count; i++){
+                    keys[i] = Math.min(keys[i], d[node][treeNodes[i]]);
+                }
+            }
+
+            return length;
+        }
+
+        private void swap(int i, int j){
+            int node = treeNodes[i];
+            treeNodes[i] = treeNodes[j];
+            treeNodes[j] = node;
+            int key = keys[i];
+            keys[i] = keys[j];
+            keys[j] = key;
+        }
+    }
+
+    /**
+     * @return The length of the path from the start through the inner nodes to the end.
+     */
+    private static int length(DistanceCache distances, int start, int[] inner, int end){
+        int length = 0;
+        int last = start;
+        for (int node : inner) {
+            length += distances.distance(last, node);
+            last = node;
+        }
+
+        return length + distances.distance(last, end);
+    }
+
+    private static int length(int[][] d, int start, int[] inner, int end){
+        int length = 0;
+        int last = start;
+        for (int node : inner) {
+            length += d[last][node];
+            last = node;
+        }
+
+        return length + d[last][end];
+    }
+}
@@ -2,27 +2,56 @@ package de.metal_land.tsp;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
+ * Shows the nodes and the current route. The solver only publishes the newest route, the window picks it up at a
+ * fixed frame rate, so routes found between two frames are skipped and the solver never waits for the drawing.
+ * Every route is published with the version of the coordinates of its nodes, the window draws a copy of the
+ * coordinates and copies them again when the version changes.
  * @author nieh
  */
 public class Gui implements Runnable{
+    /**
+     * The maximal number of frames per second.
+     */
+    private static final int FRAME_RATE = 30;
 
     private TSP tsp;
-    private Route routeToDraw;
+
+    /**
+     * The newest route published by the solver and not drawn yet.
+     */
+    private final AtomicReference<Frame> pendingFrame = new AtomicReference<>();
+
+    /**
+     * The route on the screen, only used by the event dispatch thread.
+     */
+    private Frame frameToDraw;
     private JFrame window;
+    private TspPanel panel;
     private int repaints = 0;
     private Label repaintCounter;
 
 
     public Gui(TSP tsp){
         this.tsp = tsp;
-        this.routeToDraw = tsp.getBestRoute();
+        Route route = tsp.getBestRoute();
+        this.frameToDraw = (route != null)? new Frame(route) : null;
     }
 
     @Override
     public void run() {
-        createWindow();
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                createWindow();
+            }
+        });
     }
 
     /**
@@ -32,7 +61,7 @@ public class Gui implements Runnable{
         window = new JFrame("TSP");
         window.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
 
-        TspPanel panel = new TspPanel();
+        panel = new TspPanel();
         window.add(panel, BorderLayout.CENTER);
 
         repaintCounter = new Label("Repaints: 0  Distance: 0");
@@ -44,16 +73,73 @@ public class Gui implements Runnable{
         tsp.setListener(new DataChangedEventListener() {
             @Override
             public void changed(Route route) {
-                routeToDraw = route;
-                window.repaint();
+                pendingFrame.set(new Frame(route));
             }
         });
+
+        new Timer(1000 / FRAME_RATE, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                Frame frame = pendingFrame.getAndSet(null);
+                if(frame != null){
+                    frameToDraw = frame;
+                    panel.repaint();
+                }
+            }
+        }).start();
+    }
+
+    /**
+     * A route and the version of the coordinates of its nodes when it was published.
+     */
+    private static class Frame {
+        private final Route route;
+
+        /**
+         * The coordinates of the problem, which are changed by the solver, null if the route is empty.
+         */
+        private final Coordinates coordinates;
+        private final int version;
+
+        Frame(Route route){
+            this.route = route;
+            List<Node> nodes = route.getRoute();
+            this.coordinates = nodes.isEmpty()? null : nodes.get(0).getCoordinates();
+            this.version = (coordinates != null)? coordinates.getVersion() : 0;
+        }
     }
 
     /**
      * A special Panel to visualize the solution attempt for the TSP.
      */
     private class TspPanel extends JPanel{
+        /**
+         * The copy of the coordinates which is drawn, null until the first frame.
+         */
+        private Coordinates nodes = null;
+
+        /**
+         * The coordinates and the version of the frame the nodes were copied for.
+         */
+        private Coordinates copiedFrom = null;
+        private int copiedVersion = 0;
+
+        /**
+         * The nodes drawn at the current size of the panel, only redrawn if the size or the nodes change.
+         */
+        private BufferedImage nodeLayer = null;
+
+        /**
+         * The screen coordinates of every node index.
+         */
+        private int[] screenX = new int[0];
+        private int[] screenY = new int[0];
+
+        /**
+         * The points of the route polyline, reused for every frame.
+         */
+        private int[] lineX = new int[0];
+        private int[] lineY = new int[0];
 
         public TspPanel(){
            setBorder(BorderFactory.createLineBorder(Color.black));
@@ -62,49 +148,77 @@ public class Gui implements Runnable{
         @Override
         public void paintComponent(Graphics g){
             super.paintComponent(g);
-            int maxX = 1;
-            int maxY = 1;
-            for (Node node : tsp.getNodes()) {
-                maxX = (node.getX() > maxX)? node.getX() : maxX;
-                maxY = (node.getY() > maxY)? node.getY() : maxY;
+            Frame frame = frameToDraw;
+            if(nodes == null || frame != null && (frame.coordinates != copiedFrom || frame.version != copiedVersion)){
+                // the solver may change the nodes, so only a copy is drawn
+                nodes = tsp.snapshotCoordinates();
+                copiedFrom = (frame != null)? frame.coordinates : null;
+                copiedVersion = (frame != null)? frame.version : 0;
+                nodeLayer = null;
             }
-
-            double factorX = maxX / (getSize().getWidth()-22);
-            double factorY = maxY / (getSize().getHeight()-22);
-
-            for (Node node : tsp.getNodes()) {
-                g.fillRoundRect((int) Math.round(node.getX() / factorX) + 10,
-                        (int) Math.round(node.getY() / factorY) + 10, 4, 4, 4, 4);
+            if(nodeLayer == null || nodeLayer.getWidth() != getWidth() || nodeLayer.getHeight() != getHeight()){
+                drawNodeLayer();
             }
-
-            if(routeToDraw != null){
-                Node lastNode = null;
-                for (Node node : routeToDraw.getRoute()) {
-                    if(lastNode == null){
-                        lastNode = node;
-                        continue;
-                    }
-
-                    g.drawLine((int) Math.round(lastNode.getX() / factorX) + 12,
-                            (int) Math.round(lastNode.getY() / factorY) + 12,
-                            (int) Math.round(node.getX() / factorX) + 12,
-                            (int) Math.round(node.getY() / factorY) + 12);
-
-                    lastNode = node;
+            g.drawImage(nodeLayer, 0, 0, null);
+
+            // a route of older nodes than the copy is skipped, the route of the new nodes follows
+            if(frame != null && frame.version == nodes.getVersion() && frame.route.getRoute().size() <= nodes.size()){
+                Route routeToDraw = frame.route;
+                List<Node> route = routeToDraw.getRoute();
+                int size = route.size();
+                if(lineX.length != size + 1){
+                    lineX = new int[size + 1];
+                    lineY = new int[size + 1];
                 }
-
-                if(lastNode != null){
-                    Node firstNode = routeToDraw.getRoute().get(0);
-                    g.drawLine((int) Math.round(lastNode.getX() / factorX) + 12,
-                            (int) Math.round(lastNode.getY() / factorY) + 12,
-                            (int) Math.round(firstNode.getX() / factorX) + 12,
-                            (int) Math.round(firstNode.getY() / factorY) + 12);
+                for(int i=0; i<size; i++){
+                    int index = route.get(i).getIndex();
+                    lineX[i] = screenX[index] + 2;
+                    lineY[i] = screenY[index] + 2;
+                }
+                if(size > 0){
+                    lineX[size] = lineX[0];
+                    lineY[size] = lineY[0];
+                    g.drawPolyline(lineX, lineY, size + 1);
                 }
-                repaintCounter.setText(String.format("Repaints: %5d  Distance: %6d  Best: %6d", repaints, routeToDraw.getDistance(), tsp.getBestRoute().getDistance()));
+
+                Route best = tsp.getBestRoute();
+                repaintCounter.setText(String.format("Repaints: %5d  Distance: %6d  Best: %6d", repaints,
+                        routeToDraw.getDistance(), (best != null)? best.getDistance() : routeToDraw.getDistance()));
                 repaints++;
             }
         }
 
+        /**
+         * Scales the nodes to the panel and draws them into the offscreen image.
+         */
+        private void drawNodeLayer(){
+            double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+            double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+            for(int i=0; i<nodes.size(); i++){
+                minX = Math.min(minX, nodes.getX(i));
+                maxX = Math.max(maxX, nodes.getX(i));
+                minY = Math.min(minY, nodes.getY(i));
+                maxY = Math.max(maxY, nodes.getY(i));
+            }
+
+            double factorX = Math.max(1, maxX - minX) / Math.max(1, getWidth() - 22);
+            double factorY = Math.max(1, maxY - minY) / Math.max(1, getHeight() - 22);
+
+            screenX = new int[nodes.size()];
+            screenY = new int[nodes.size()];
+            nodeLayer = new BufferedImage(Math.max(1, getWidth()), Math.max(1, getHeight()), BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = nodeLayer.createGraphics();
+            g.setColor(getForeground());
+            for(int i=0; i<nodes.size(); i++){
+                int x = (int) Math.round((nodes.getX(i) - minX) / factorX) + 10;
+                int y = (int) Math.round((nodes.getY(i) - minY) / factorY) + 10;
+                screenX[i] = x;
+                screenY[i] = y;
+                g.fillRoundRect(x, y, 4, 4, 4, 4);
+            }
+            g.dispose();
+        }
+
         @Override
         public Dimension getPreferredSize() {
             return new Dimension(800,500);
@@ -0,0 +1,261 @@
+package de.metal_land.tsp;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * The Held-Karp lower bound of the distance of every route. A 1-tree is a minimum spanning tree of all nodes
+ * but the special node 0, joined to the special node by its two shortest edges, so every route is a 1-tree.
+ * Penalties pi on the nodes change the distances to d(i, j) + pi[i] + pi[j] without changing the best route,
+ * the subgradient ascent raises the penalties of nodes with more than two edges in the 1-tree until it gets as
+ * long as possible. The steps follow the schedule of Volgenant and Jonker.
+ * Every iteration takes quadratic time in the number of nodes.
+ * @author nieh
+ */
+public class HeldKarpBound {
+    private final DistanceCache distances;
+    private final int size;
+
+    /**
+     * The penalties of the longest 1-tree found.
+     */
+    private final double[] pi;
+
+    /**
+     * The parent of every node in the spanning tree, -1 for the root and the special node.
+     */
+    private final int[] parent;
+
+    /**
+     * The nodes in the order they were added to the spanning tree, every node comes after its parent.
+     */
+    private final int[] order;
+    private final int[] degrees;
+
+    /**
+     * The lower bound, the rounded up length of the longest 1-tree minus twice the sum of the penalties.
+     */
+    @Getter
+    private int bound = 0;
+
+    /**
+     * True if the longest 1-tree is a route, so the bound is the optimal distance.
+     */
+    @Getter
+    private boolean optimal = false;
+
+    /**
+     * The two nodes joined to the special node.
+     */
+    private int first, second;
+
+    /**
+     * @param distances The distances between the nodes.
+     */
+    public HeldKarpBound(DistanceCache distances){
+        this.distances = distances;
+        this.size = distances.size();
+        this.pi = new double[size];
+        this.parent = new int[size];
+        this.order = new int[size];
+        this.degrees = new int[size];
+    }
+
+    /**
+     * Runs the subgradient ascent from zero penalties.
+     * @param iterations The maximal number of iterations, at least 3.
+     * @return The lower bound.
+     */
+    public int compute(int iterations){
+        if(size < 3){
+            optimal = true;
+            bound = (size == 2)? 2 * distances.distance(0, 1) : 0;
+            return bound;
+        }
+        iterations = Math.max(3, iterations);
+
+        double[] current = new double[size];
+        int[] lastDirection = new int[size];
+        double best = oneTree(current);
+        // the first step is the average length of an edge of the 1-tree
+        double firstStep = best / size;
+
+        for(int k=1; k<=iterations; k++){
+            double length = (k == 1)? best : oneTree(current);
+            if(length > best){
+                best = length;
+                System.arraycopy(current, 0, pi, 0, size);
+            }
+
+            optimal = true;
+            for(int i=0; i<size && optimal; i++){
+                optimal = degrees[i] == 2;
+            }
+            if(optimal){
+                // the 1-tree is a route, keep the penalties it was built with
+                System.arraycopy(current, 0, pi, 0, size);
+                best = length;
+                break;
+            }
+
+            double step = firstStep * ((k - 1) * (2.0 * iterations - 5) / (2.0 * (iterations - 1)) - (k - 2)
+                    + (k - 1) * (k - 2) / (2.0 * (iterations - 1) * (iterations - 2)));
+            for(int i=0; i<size; i++){
+                int direction = degrees[i] - 2;
+                current[i] += step * (0.6 * direction + 0.4 * lastDirection[i]);
+                lastDirection[i] = direction;
+            }
+        }
+
+        // leave the tree of the best penalties for the alpha values
+        best = Math.max(best, oneTree(pi));
+        bound = (int) Math.ceil(best - 1e-6);
+        return bound;
+    }
+
+    /**
+     * Builds the minimum 1-tree with the penalties.
+     * @return The length of the 1-tree minus twice the sum of the penalties.
+     */
+    private double oneTree(double[] penalties){
+        double[] key = new double[size];
+        boolean[] inTree = new boolean[size];
+        Arrays.fill(key, Double.MAX_VALUE);
+        Arrays.fill(degrees, 0);
+
+        // Prim's algorithm on all nodes but the special node 0, rooted at node 1
+        double length = 0;
+        parent[1] = -1;
+        parent[0] = -1;
+        key[1] = 0;
+        for(int added=0; added<size - 1; added++){
+            int next = -1;
+            for(int j=1; j<size; j++){
+                if(!inTree[j] && (next == -1 || key[j] < key[next])){
+                    next = j;
+                }
+            }
+
+            inTree[next] = true;
+            order[added] = next;
+            length += key[next];
+            if(parent[next] >= 0){
+                degrees[next]++;
+                degrees[parent[next]]++;
+            }
+
+            for(int j=1; j<size; j++){
+                if(!inTree[j]){
+                    double cost = distances.distance(next, j) + penalties[next] + penalties[j];
+                    if(cost < key[j]){
+                        key[j] = cost;
+                        parent[j] = next;
+                    }
+                }
+            }
+        }
+        order[size - 1] = 0;
+
+        // join the special node by its two shortest edges
+        first = -1;
+        second = -1;
+        for(int j=1; j<size; j++){
+            if(first == -1 || cost(penalties, 0, j) < cost(penalties, 0, first)){
+                second = first;
+                first = j;
+            } else if(second == -1 || cost(penalties, 0, j) < cost(penalties, 0, second)){
+                second = j;
+            }
+        }
+        length += cost(penalties, 0, first) + cost(penalties, 0, second);
+        degrees[0] = 2;
+        degrees[first]++;
+        degrees[second]++;
+
+        double sum = 0;
+        for (double penalty : penalties) {
+            sum += penalty;
+        }
+
+        return length - 2 * sum;
+    }
+
+    private double cost(double[] penalties, int i, int j){
+        return distances.distance(i, j) + penalties[i] + penalties[j];
+    }
+
+    /**
+     * Builds candidate lists by the alpha-nearness of the longest 1-tree of {@link #compute(int)}: the alpha value
+     * of an edge is the increase of the length of the minimum 1-tree that has to contain the edge. Edges with a
+     * small alpha value are much more likely to be part of an optimal route than short edges.
+     * Takes quadratic time in the number of nodes.
+     * @param k The number of candidates per node.
+     * @return The candidate lists, ordered by the alpha value and then by the distance.
+     */
+    public CandidateLists alphaCandidates(int k){
+        k = Math.min(k, size - 1);
+        int[] candidates = new int[size * k];
+        if(k <= 0){
+            return new CandidateLists(0, candidates);
+        }
+
+        double[] alphas = new double[k];
+        double[] costs = new double[k];
+        double[] beta = new double[size];
+        int[] mark = new int[size];
+        double secondCost = cost(pi, 0, second);
+
+        for(int i=0; i<size; i++){
+            // beta[j] is the longest edge on the tree path from i to j
+            if(i != 0){
+                mark[i] = i + 1;
+                beta[i] = -Double.MAX_VALUE;
+                for(int u=i; parent[u] >= 0; u=parent[u]){
+                    beta[parent[u]] = Math.max(beta[u], cost(pi, u, parent[u]));
+                    mark[parent[u]] = i + 1;
+                }
+            }
+
+            int found = 0;
+            for(int index=0; index<size; index++){
+                int j = order[index];
+                if(j == i){
+                    continue;
+                }
+
+                double cost = cost(pi, i, j);
+                double alpha;
+                if(i == 0 || j == 0){
+                    alpha = (i + j == first || i + j == second)? 0 : cost - secondCost;
+                } else {
+                    if(mark[j] != i + 1){
+                        beta[j] = Math.max(beta[parent[j]], cost(pi, j, parent[j]));
+                    }
+                    alpha = cost - beta[j];
+                }
+
+                // insert into the k best candidates so far
+                int position = found;
+                while(position > 0 && (alphas[position - 1] > alpha
+                        || alphas[position - 1] == alpha && costs[position - 1] > cost)){
+                    if(position < k){
+                        alphas[position] = alphas[position - 1];
+                        costs[position] = costs[position - 1];
+                        candidates[i * k + position] = candidates[i * k + position - 1];
+                    }
+                    position--;
+                }
+                if(position < k){
+                    alphas[position] = alpha;
+                    costs[position] = cost;
+                    candidates[i * k + position] = j;
+                    found = Math.min(k, found + 1);
+                }
+            }
+        }
+
+        return new CandidateLists(k, candidates);
+    }
+
+}
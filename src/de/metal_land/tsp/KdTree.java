@@ -0,0 +1,328 @@
+package de.metal_land.tsp;
+
+import java.util.List;
+
+/**
+ * A 2-d tree over the coordinates of the nodes, used to find the nearest nodes without looking at all of them.
+ * The nodes are ranked by their euclidean distance in the plane, so it only fits the planar metrics, see
+ * {@link Metric#isPlanar()}.
+ * The tree itself is never changed after it is built, so it may be shared between threads.
+ * @author nieh
+ */
+public class KdTree {
+    private final double[] xs;
+    private final double[] ys;
+
+    /**
+     * The node indices in tree order, the root of the range [lo, hi) is at the position (lo + hi) / 2.
+     */
+    private final int[] tree;
+
+    /**
+     * The position of every node index in the tree.
+     */
+    private final int[] positions;
+
+    /**
+     * The split axis of every tree position, true for x.
+     */
+    private final boolean[] splitX;
+
+    /**
+     * The number of nodes in the subtree of every tree position.
+     */
+    private final int[] subtreeSizes;
+
+    /**
+     * Builds the tree in O(n log n).
+     * @param nodes The nodes, the index of every node has to match its position in the list.
+     */
+    public KdTree(List<Node> nodes){
+        int size = nodes.size();
+        xs = new double[size];
+        ys = new double[size];
+        tree = new int[size];
+        positions = new int[size];
+        splitX = new boolean[size];
+        subtreeSizes = new int[size];
+
+        for (Node node : nodes) {
+            xs[node.getIndex()] = node.getX();
+            ys[node.getIndex()] = node.getY();
+        }
+        for(int i=0; i<size; i++){
+            tree[i] = i;
+        }
+
+        build(0, size);
+
+        for(int i=0; i<size; i++){
+            positions[tree[i]] = i;
+        }
+    }
+
+    /**
+     * @return The number of nodes in the tree.
+     */
+    public int size(){
+        return tree.length;
+    }
+
+    /**
+     * Builds the subtree of the given range by splitting at the median of the axis with the larger spread.
+     */
+    private void build(int lo, int hi){
+        if(lo >= hi){
+            return;
+        }
+
+        double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for(int i=lo; i<hi; i++){
+            int node = tree[i];
+            minX = Math.min(minX, xs[node]);
+            maxX = Math.max(maxX, xs[node]);
+            minY = Math.min(minY, ys[node]);
+            maxY = Math.max(maxY, ys[node]);
+        }
+
+        boolean byX = maxX - minX >= maxY - minY;
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, byX ? xs : ys);
+        splitX[mid] = byX;
+        subtreeSizes[mid] = hi - lo;
+
+        build(lo, mid);
+        build(mid + 1, hi);
+    }
+
+    /**
+     * Rearranges the range [lo, hi] so that the position k holds the node it would hold if the range was sorted.
+     */
+    private void select(int lo, int hi, int k, double[] values){
+        while(lo < hi){
+            int middle = (lo + hi) >>> 1;
+            double pivot = median(values[tree[lo]], values[tree[middle]], values[tree[hi]]);
+            int i = lo;
+            int j = hi;
+
+            while(i <= j){
+                while(values[tree[i]] < pivot) { i++; }
+                while(values[tree[j]] > pivot) { j--; }
+                if(i <= j){
+                    int swap = tree[i];
+                    tree[i] = tree[j];
+                    tree[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+
+            if(k <= j){
+                hi = j;
+            } else if(k >= i){
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static double median(double a, double b, double c){
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    /**
+     * Returns the k nearest nodes of the given node, ordered by their distance.
+     * @param node The index of the node.
+     * @param k The number of nodes to find.
+     * @return The indices of the found nodes, the node itself is not included.
+     */
+    public int[] kNearest(int node, int k){
+        Query query = new Query(Math.min(k, size() - 1));
+        query.search(xs[node], ys[node], node, null, null);
+
+        return query.sorted();
+    }
+
+    /**
+     * @return A new set holding all nodes of the tree, from which nodes can be removed.
+     */
+    public Remaining remaining(){
+        return new Remaining();
+    }
+
+    /**
+     * The remaining nodes, the search skips subtrees without remaining nodes. Every thread has to use its own set.
+     */
+    public class Remaining implements RemainingNodes {
+        private final int[] alive = subtreeSizes.clone();
+        private final boolean[] removed = new boolean[tree.length];
+        private final Query query = new Query(1);
+        private int size = tree.length;
+
+        @Override
+        public int size(){
+            return size;
+        }
+
+        @Override
+        public boolean contains(int node){
+            return !removed[positions[node]];
+        }
+
+        @Override
+        public void remove(int node){
+            int position = positions[node];
+            if(removed[position]){
+                return;
+            }
+
+            removed[position] = true;
+            size--;
+
+            int lo = 0;
+            int hi = tree.length;
+            while(true){
+                int mid = (lo + hi) >>> 1;
+                alive[mid]--;
+                if(mid == position){
+                    break;
+                } else if(position < mid){
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+        }
+
+        @Override
+        public int nearest(int node){
+            query.reset();
+            query.search(xs[node], ys[node], node, alive, removed);
+
+            return (query.count > 0)? query.nodes[0] : -1;
+        }
+    }
+
+    /**
+     * A k nearest neighbor search, the found nodes are kept in a max heap ordered by the squared distance.
+     */
+    private class Query {
+        private final int k;
+        private final int[] nodes;
+        private final double[] squaredDistances;
+        private int count = 0;
+
+        private double x;
+        private double y;
+        private int exclude;
+        private int[] alive;
+        private boolean[] removed;
+
+        Query(int k){
+            this.k = k;
+            nodes = new int[k];
+            squaredDistances = new double[k];
+        }
+
+        void reset(){
+            count = 0;
+        }
+
+        void search(double x, double y, int exclude, int[] alive, boolean[] removed){
+            this.x = x;
+            this.y = y;
+            this.exclude = exclude;
+            this.alive = alive;
+            this.removed = removed;
+
+            if(k > 0){
+                search(0, tree.length);
+            }
+        }
+
+        private void search(int lo, int hi){
+            if(lo >= hi){
+                return;
+            }
+
+            int mid = (lo + hi) >>> 1;
+            if(alive != null && alive[mid] == 0){
+                return;
+            }
+
+            int node = tree[mid];
+            double dx = xs[node] - x;
+            double dy = ys[node] - y;
+            if(node != exclude && (removed == null || !removed[mid])){
+                offer(node, dx * dx + dy * dy);
+            }
+
+            double diff = splitX[mid] ? dx : dy;
+            if(diff > 0){
+                search(lo, mid);
+                if(diff * diff < bound()){
+                    search(mid + 1, hi);
+                }
+            } else {
+                search(mid + 1, hi);
+                if(diff * diff < bound()){
+                    search(lo, mid);
+                }
+            }
+        }
+
+        private double bound(){
+            return (count < k)? Double.MAX_VALUE : squaredDistances[0];
+        }
+
+        private void offer(int node, double squaredDistance){
+            if(count < k){
+                int i = count++;
+                while(i > 0 && squaredDistances[(i - 1) / 2] < squaredDistance){
+                    nodes[i] = nodes[(i - 1) / 2];
+                    squaredDistances[i] = squaredDistances[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+                nodes[i] = node;
+                squaredDistances[i] = squaredDistance;
+            } else if(squaredDistance < squaredDistances[0]){
+                siftDown(node, squaredDistance, count);
+            }
+        }
+
+        private void siftDown(int node, double squaredDistance, int size){
+            int i = 0;
+            while(2 * i + 1 < size){
+                int child = 2 * i + 1;
+                if(child + 1 < size && squaredDistances[child + 1] > squaredDistances[child]){
+                    child++;
+                }
+                if(squaredDistances[child] <= squaredDistance){
+                    break;
+                }
+                nodes[i] = nodes[child];
+                squaredDistances[i] = squaredDistances[child];
+                i = child;
+            }
+            nodes[i] = node;
+            squaredDistances[i] = squaredDistance;
+        }
+
+        /**
+         * Empties the heap.
+         * @return The found nodes, nearest first.
+         */
+        int[] sorted(){
+            int[] result = new int[count];
+            for(int size = count; size > 0; size--){
+                result[size - 1] = nodes[0];
+                siftDown(nodes[size - 1], squaredDistances[size - 1], size - 1);
+            }
+            count = 0;
+
+            return result;
+        }
+    }
+}
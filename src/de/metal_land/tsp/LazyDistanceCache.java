@@ -0,0 +1,24 @@
+package de.metal_land.tsp;
+
+/**
+ * Calculates the distances on demand. Needs no memory besides the coordinates, but every lookup pays for the
+ * calculation. Nodes added to the coordinates are covered at once.
+ * @author nieh
+ */
+public class LazyDistanceCache implements DistanceCache {
+    private final Coordinates coordinates;
+
+    public LazyDistanceCache(Coordinates coordinates){
+        this.coordinates = coordinates;
+    }
+
+    @Override
+    public int size() {
+        return coordinates.size();
+    }
+
+    @Override
+    public int distance(int from, int to) {
+        return coordinates.distance(from, to);
+    }
+}
@@ -0,0 +1,338 @@
+package de.metal_land.tsp;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.SplittableRandom;
+
+/**
+ * A variable depth search in the style of Lin-Kernighan. Every step of a move is a 2-opt flip, which keeps the
+ * tour valid, the move goes deeper as long as the partial gain stays positive and is cut back to its best step.
+ * Together with {@link #kick(Tour, SplittableRandom)} it forms an iterated Lin-Kernighan search.
+ * @author nieh
+ */
+public class LinKernighan {
+    private final CandidateLists candidates;
+
+    /**
+     * The maximal number of flips of one move.
+     */
+    @Getter
+    @Setter
+    private int maxDepth = 50;
+
+    /**
+     * The number of alternatives tried for the first added edge.
+     */
+    @Getter
+    @Setter
+    private int breadth = 5;
+
+    /**
+     * The maximal length of the segments swapped by a kick.
+     */
+    @Getter
+    @Setter
+    private int maxKickLength = 50;
+
+    /**
+     * Counts the evaluated moves, may be null.
+     */
+    @Getter
+    @Setter
+    private SolverMetrics metrics = null;
+
+    /**
+     * The number of moves evaluated by the running optimization.
+     */
+    private long evaluatedMoves;
+
+    private Tour tour;
+    private DistanceCache distances;
+    private NodeQueue queue;
+
+    /**
+     * The journal of the flips of the current move, four nodes per flip as passed to {@link #flip(int, int)}.
+     */
+    private int[] flips;
+    private int flipCount;
+
+    /**
+     * The alternatives for the first added edge and their lookahead values.
+     */
+    private int[] alternatives;
+    private int[] values;
+
+    public LinKernighan(CandidateLists candidates){
+        this.candidates = candidates;
+    }
+
+    /**
+     * Improves the tour until it is a local optimum, all nodes are looked at.
+     * @param tour The tour to improve.
+     * @return The change of the distance.
+     */
+    public int optimize(Tour tour){
+        init(tour);
+        for(int i=0; i<tour.size(); i++){
+            queue.push(tour.get(i));
+        }
+
+        return run();
+    }
+
+    /**
+     * Improves the tour until it is a local optimum, starting only with the given nodes.
+     * @param tour The tour to improve.
+     * @param nodes The indices of the nodes to look at first.
+     * @return The change of the distance.
+     */
+    public int optimize(Tour tour, int... nodes){
+        init(tour);
+        for (int node : nodes) {
+            queue.push(node);
+        }
+
+        return run();
+    }
+
+    /**
+     * Perturbs the tour by swapping two short neighboring segments, a double bridge move which can not be undone
+     * by the flips of a single move.
+     * @param tour The tour to perturb.
+     * @param random The random source.
+     * @return The indices of the nodes whose edges changed.
+     */
+    public int[] kick(Tour tour, SplittableRandom random){
+        int size = tour.size();
+        if(size < 8){
+            return new int[0];
+        }
+
+        int maxLength = Math.max(1, Math.min(maxKickLength, (size - 2) / 2));
+        int lengthB = 1 + random.nextInt(maxLength);
+        int lengthC = 1 + random.nextInt(maxLength);
+
+        int start = random.nextInt(size);
+        int s1 = tour.get(start);
+        int sL = tour.get((start + lengthB - 1) % size);
+        int c = tour.get((start + lengthB + lengthC - 1) % size);
+        int[] touched = {tour.prev(s1), s1, sL, tour.next(sL), c, tour.next(c)};
+
+        tour.orOpt(s1, sL, c, false);
+
+        return touched;
+    }
+
+    private void init(Tour tour){
+        this.tour = tour;
+        this.distances = tour.getDistances();
+        if(queue == null || queue.capacity() != tour.size()){
+            queue = new NodeQueue(tour.size());
+            flips = new int[4 * maxDepth];
+        } else {
+            queue.clear();
+        }
+        if(flips.length < 4 * maxDepth){
+            flips = new int[4 * maxDepth];
+        }
+        if(alternatives == null || alternatives.length != breadth){
+            alternatives = new int[breadth];
+            values = new int[breadth];
+        }
+    }
+
+    private int run(){
+        int start = tour.getDistance();
+        evaluatedMoves = 0;
+        while(!queue.isEmpty()){
+            int t1 = queue.pop();
+            while(improve(t1, tour.next(t1)) || improve(t1, tour.prev(t1))){
+                // stay at the node as long as it can be improved
+            }
+        }
+
+        if(metrics != null){
+            metrics.addEvaluatedMoves(evaluatedMoves);
+        }
+
+        return tour.getDistance() - start;
+    }
+
+    private int d(int from, int to){
+        return distances.distance(from, to);
+    }
+
+    /**
+     * Searches an improving move, which starts by removing the edge (t1, t2).
+     * @return True if a move was applied.
+     */
+    private boolean improve(int t1, int t2){
+        int removed = d(t1, t2);
+        int count = 0;
+
+        // the candidates for the first added edge, ordered by the lookahead value
+        for(int rank=0; rank<candidates.size(); rank++){
+            int t3 = candidates.get(t2, rank);
+            int added = d(t2, t3);
+            if(added >= removed){
+                break;
+            }
+            evaluatedMoves++;
+            if(!isValid(t1, t2, t3)){
+                continue;
+            }
+
+            int value = d(t3, partner(t1, t2, t3)) - added;
+            int i = Math.min(count, breadth - 1);
+            if(count == breadth && values[i] >= value){
+                continue;
+            }
+            while(i > 0 && values[i - 1] < value){
+                alternatives[i] = alternatives[i - 1];
+                values[i] = values[i - 1];
+                i--;
+            }
+            alternatives[i] = t3;
+            values[i] = value;
+            count = Math.min(count + 1, breadth);
+        }
+
+        for(int i=0; i<count; i++){
+            if(deepen(t1, t2, alternatives[i], removed)){
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Goes deeper from the first added edge (t2, t3) as long as the gain stays positive, keeps the best prefix of
+     * the flips and undoes the rest.
+     * @return True if the tour got shorter.
+     */
+    private boolean deepen(int t1, int t2, int t3, int gain){
+        flipCount = 0;
+        int bestGain = 0;
+        int bestFlips = 0;
+
+        for(int depth=0; depth<maxDepth; depth++){
+            int t4 = partner(t1, t2, t3);
+            gain += d(t3, t4) - d(t2, t3);
+
+            if(tour.next(t2) == t1){
+                flip(t2, t3);
+            } else {
+                flip(t1, t4);
+            }
+
+            if(gain - d(t4, t1) > bestGain){
+                bestGain = gain - d(t4, t1);
+                bestFlips = flipCount;
+            }
+
+            // the edge (t1, t4) is removed next, search the best edge to add from t4
+            t2 = t4;
+            t3 = -1;
+            int bestValue = Integer.MIN_VALUE;
+            for(int rank=0; rank<candidates.size(); rank++){
+                int candidate = candidates.get(t2, rank);
+                int added = d(t2, candidate);
+                if(added >= gain){
+                    break;
+                }
+                evaluatedMoves++;
+                if(!isValid(t1, t2, candidate)){
+                    continue;
+                }
+
+                int partner = partner(t1, t2, candidate);
+                int value = d(candidate, partner) - added;
+                if(value > bestValue && !isAdded(candidate, partner)){
+                    t3 = candidate;
+                    bestValue = value;
+                }
+            }
+
+            if(t3 < 0){
+                break;
+            }
+        }
+
+        while(flipCount > bestFlips){
+            undoFlip();
+        }
+
+        if(bestGain > 0){
+            for(int i=0; i<4*flipCount; i++){
+                queue.push(flips[i]);
+            }
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return True if (t2, t3) is a new edge, t1 has to be a neighbor of t2.
+     */
+    private boolean isValid(int t1, int t2, int t3){
+        return t3 != t1 && t3 != tour.next(t2) && t3 != tour.prev(t2);
+    }
+
+    /**
+     * Returns the node t4, whose edge to t3 is removed if the edge (t2, t3) is added. The node t1 has to be a
+     * neighbor of t2, the edge between them is removed and t1 gets connected to t4.
+     */
+    private int partner(int t1, int t2, int t3){
+        return (tour.next(t2) == t1)? tour.next(t3) : tour.prev(t3);
+    }
+
+    /**
+     * @return True if the edge was added by the current move.
+     */
+    private boolean isAdded(int a, int b){
+        for(int i=0; i<flipCount; i++){
+            int x = flips[4 * i];
+            int y = flips[4 * i + 2];
+            int nextX = flips[4 * i + 1];
+            int nextY = flips[4 * i + 3];
+            if((x == a && y == b) || (x == b && y == a) || (nextX == a && nextY == b) || (nextX == b && nextY == a)){
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Applies the 2-opt move on (x, next(x)) and (y, next(y)) and writes it to the journal.
+     */
+    private void flip(int x, int y){
+        int i = 4 * flipCount++;
+        flips[i] = x;
+        flips[i + 1] = tour.next(x);
+        flips[i + 2] = y;
+        flips[i + 3] = tour.next(y);
+        tour.twoOpt(x, y);
+    }
+
+    /**
+     * Undoes the last flip of the journal.
+     */
+    private void undoFlip(){
+        int i = 4 * --flipCount;
+        int x = flips[i];
+        int nextX = flips[i + 1];
+        int y = flips[i + 2];
+        int nextY = flips[i + 3];
+
+        // the flip replaced (x, nextX) and (y, nextY) by (x, y) and (nextX, nextY)
+        if(tour.next(x) == y){
+            tour.twoOpt(x, nextX);
+        } else {
+            tour.twoOpt(y, nextY);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package de.metal_land.tsp;
+
+import java.nio.IntBuffer;
+
+/**
+ * Reads the distances from the lower half of the matrix in a memory mapped file, so processes on the same host
+ * share the distances through the page cache. The layout matches the {@link TriangularDistanceCache}.
+ * @author nieh
+ */
+public class MappedDistanceCache implements DistanceCache {
+    private final int size;
+    private final IntBuffer triangle;
+
+    /**
+     * @param size The number of nodes.
+     * @param triangle The lower half of the matrix row by row, without the diagonal.
+     */
+    public MappedDistanceCache(int size, IntBuffer triangle){
+        this.size = size;
+        this.triangle = triangle;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int distance(int from, int to) {
+        if(from == to){
+            return 0;
+        } else if(from < to){
+            return triangle.get(rowOffset(to) + from);
+        }
+
+        return triangle.get(rowOffset(from) + to);
+    }
+
+    /**
+     * @return The position of the first distance of the row in the triangle.
+     */
+    static int rowOffset(int row){
+        return (int) ((long) row * (row - 1) / 2);
+    }
+}
@@ -0,0 +1,47 @@
+package de.metal_land.tsp;
+
+/**
+ * Stores all distances in a flat n*n matrix.
+ * @author nieh
+ */
+public class MatrixDistanceCache implements DistanceCache {
+    private final int size;
+    private final int[] matrix;
+
+    /**
+     * Calculates all distances, the upper half of every row is filled at once by the distance kernel and copied
+     * to the column.
+     * @param coordinates The coordinates of the nodes.
+     */
+    public MatrixDistanceCache(Coordinates coordinates){
+        size = coordinates.size();
+        matrix = new int[size * size];
+
+        for(int i=0; i<size; i++){
+            coordinates.row(i, i + 1, size, matrix, i * size + i + 1);
+            for(int j=i+1; j<size; j++){
+                matrix[j * size + i] = matrix[i * size + j];
+            }
+        }
+    }
+
+    /**
+     * Uses the given distances.
+     * @param size The number of nodes.
+     * @param matrix The distances as flat n*n matrix, the array is not copied.
+     */
+    public MatrixDistanceCache(int size, int[] matrix){
+        this.size = size;
+        this.matrix = matrix;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int distance(int from, int to) {
+        return matrix[from * size + to];
+    }
+}
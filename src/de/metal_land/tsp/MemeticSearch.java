@@ -0,0 +1,455 @@
+package de.metal_land.tsp;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A genetic algorithm whose offspring are optimized with 2-opt and or-opt moves before they compete with their
+ * parents. The offspring of a generation are created and optimized in parallel on a work-stealing pool, every
+ * child with its own random stream, so a generation does not depend on the scheduling.
+ * The diversity of the population is measured by the entropy of its edges, if it falls below the minimum most of
+ * the population is replaced by perturbed copies of the best tour.
+ * @author nieh
+ */
+public class MemeticSearch {
+    /**
+     * The ways to combine two parents.
+     */
+    public enum Crossover {
+        /**
+         * Order crossover: a section of the first parent is kept, the remaining nodes follow in the order of the
+         * second parent.
+         */
+        ORDER,
+
+        /**
+         * Edge recombination: the child is built from the edges of both parents, shared edges first.
+         */
+        EDGE_RECOMBINATION
+    }
+
+    private final CandidateLists candidates;
+
+    /**
+     * The number of tours in the population.
+     */
+    @Getter
+    @Setter
+    private int populationSize = 32;
+
+    /**
+     * The number of children per generation.
+     */
+    @Getter
+    @Setter
+    private int offspringSize = 32;
+
+    @Getter
+    @Setter
+    private Crossover crossover = Crossover.EDGE_RECOMBINATION;
+
+    /**
+     * The minimal normalized edge entropy of the population, between 0 for equal tours and 1 for tours without
+     * a common edge.
+     */
+    @Getter
+    @Setter
+    private double minEntropy = 0.1;
+
+    /**
+     * Counts the evaluated moves of the local search, may be null.
+     */
+    @Getter
+    @Setter
+    private SolverMetrics metrics = null;
+
+    private final List<Tour> population = new ArrayList<>();
+
+    /**
+     * The local search of every worker thread.
+     */
+    private final ThreadLocal<TwoOptSearch> localSearch = new ThreadLocal<TwoOptSearch>() {
+        @Override
+        protected TwoOptSearch initialValue() {
+            TwoOptSearch search = new TwoOptSearch(candidates);
+            search.setMetrics(metrics);
+            return search;
+        }
+    };
+
+    public MemeticSearch(CandidateLists candidates){
+        this.candidates = candidates;
+    }
+
+    /**
+     * Creates the first population from perturbed and optimized copies of the start tour.
+     * @param start The start tour, it is part of the population.
+     * @param pool The pool to optimize the tours on.
+     * @param random The random source.
+     */
+    public void initialize(Tour start, ForkJoinPool pool, SplittableRandom random){
+        population.clear();
+        Tour first = new Tour(start);
+        localSearch.get().optimize(first);
+        population.add(first);
+        population.addAll(perturbed(first, populationSize - 1, pool, random));
+        Collections.sort(population, BY_DISTANCE);
+    }
+
+    /**
+     * @return The best tour of the population.
+     */
+    public Tour best(){
+        return population.get(0);
+    }
+
+    /**
+     * @return The tours of the population, ordered by their distance.
+     */
+    public List<Tour> getPopulation(){
+        return Collections.unmodifiableList(population);
+    }
+
+    /**
+     * Creates and optimizes the children of one generation and keeps the best distinct tours of parents and
+     * children.
+     * @param pool The pool to create the children on.
+     * @param random The random source.
+     * @return The best tour of the new population.
+     */
+    public Tour nextGeneration(ForkJoinPool pool, SplittableRandom random){
+        Tour[] children = new Tour[offspringSize];
+        SplittableRandom[] randoms = new SplittableRandom[offspringSize];
+        for(int i=0; i<offspringSize; i++){
+            randoms[i] = random.split();
+        }
+        if(offspringSize > 0){
+            pool.invoke(new OffspringTask(children, randoms, 0, offspringSize));
+        }
+
+        List<Tour> survivors = new ArrayList<>(population);
+        survivors.addAll(Arrays.asList(children));
+        Collections.sort(survivors, BY_DISTANCE);
+
+        // the best tours survive, tours with the distance of a better one are taken as copies of it
+        population.clear();
+        int lastDistance = -1;
+        for (Tour tour : survivors) {
+            if(population.size() == populationSize){
+                break;
+            }
+            if(tour.getDistance() != lastDistance){
+                population.add(tour);
+                lastDistance = tour.getDistance();
+            }
+        }
+
+        if(population.size() < populationSize || entropy() < minEntropy){
+            diversify(pool, random);
+        }
+
+        return best();
+    }
+
+    /**
+     * Keeps the best quarter of the population and fills it up with perturbed copies of the best tour.
+     */
+    private void diversify(ForkJoinPool pool, SplittableRandom random){
+        int keep = Math.min(population.size(), Math.max(1, populationSize / 4));
+        population.subList(keep, population.size()).clear();
+        population.addAll(perturbed(population.get(0), populationSize - keep, pool, random));
+        Collections.sort(population, BY_DISTANCE);
+    }
+
+    /**
+     * Calculates the normalized entropy of the edges of the population: 0 if all tours are equal, 1 if no edge is
+     * used by two tours.
+     */
+    double entropy(){
+        int size = population.size();
+        int nodes = population.get(0).size();
+        if(size < 2){
+            return 0;
+        }
+
+        Map<Long, Integer> counts = new HashMap<>(2 * size * nodes);
+        for (Tour tour : population) {
+            for(int node=0; node<nodes; node++){
+                int next = tour.next(node);
+                long key = (node < next)? ((long) node << 32) | next : ((long) next << 32) | node;
+                Integer count = counts.get(key);
+                counts.put(key, (count == null)? 1 : count + 1);
+            }
+        }
+
+        double total = (double) size * nodes;
+        double entropy = 0;
+        for (int count : counts.values()) {
+            double p = count / total;
+            entropy -= p * Math.log(p);
+        }
+
+        return (entropy - Math.log(nodes)) / Math.log(size);
+    }
+
+    /**
+     * Creates perturbed and optimized copies of the tour in parallel.
+     */
+    private List<Tour> perturbed(Tour tour, int count, ForkJoinPool pool, SplittableRandom random){
+        Tour[] tours = new Tour[count];
+        SplittableRandom[] randoms = new SplittableRandom[count];
+        for(int i=0; i<count; i++){
+            tours[i] = new Tour(tour);
+            randoms[i] = random.split();
+        }
+        if(count > 0){
+            pool.invoke(new PerturbTask(tours, randoms, 0, count));
+        }
+
+        return Arrays.asList(tours);
+    }
+
+    /**
+     * Moves random segments of the tour to other random positions.
+     */
+    private static void perturb(Tour tour, SplittableRandom random){
+        int size = tour.size();
+        if(size < 8){
+            return;
+        }
+
+        int maxLength = Math.max(1, Math.min(50, (size - 2) / 2));
+        for(int kick=Math.max(1, size / 50); kick>0; kick--){
+            int lengthB = 1 + random.nextInt(maxLength);
+            int lengthC = 1 + random.nextInt(maxLength);
+            int start = random.nextInt(size);
+            int s1 = tour.get(start);
+            int sL = tour.get((start + lengthB - 1) % size);
+            int c = tour.get((start + lengthB + lengthC - 1) % size);
+            tour.orOpt(s1, sL, c, false);
+        }
+    }
+
+    /**
+     * Picks the better of two random tours of the population.
+     */
+    private Tour select(SplittableRandom random){
+        Tour a = population.get(random.nextInt(population.size()));
+        Tour b = population.get(random.nextInt(population.size()));
+
+        return (a.getDistance() <= b.getDistance())? a : b;
+    }
+
+    /**
+     * Creates a child of two parents.
+     * @return The child as order of the node indices.
+     */
+    private int[] crossover(Tour first, Tour second, SplittableRandom random){
+        switch (crossover){
+            case ORDER:
+                return orderCrossover(first, second, random);
+            default:
+                return edgeRecombination(first, second, random);
+        }
+    }
+
+    private static int[] orderCrossover(Tour first, Tour second, SplittableRandom random){
+        int size = first.size();
+        int from = random.nextInt(size);
+        int length = 1 + random.nextInt(size - 1);
+        int[] child = new int[size];
+        boolean[] used = new boolean[size];
+
+        for(int i=0; i<length; i++){
+            int node = first.get((from + i) % size);
+            child[i] = node;
+            used[node] = true;
+        }
+
+        // the rest follows in the order of the second parent, starting behind the section
+        int count = length;
+        int node = second.next(child[length - 1]);
+        for(int i=0; i<size && count<size; i++){
+            if(!used[node]){
+                child[count++] = node;
+                used[node] = true;
+            }
+            node = second.next(node);
+        }
+
+        return child;
+    }
+
+    private int[] edgeRecombination(Tour first, Tour second, SplittableRandom random){
+        int size = first.size();
+
+        // the neighbors of every node in both parents, edges of both parents are marked as shared
+        int[] neighbors = new int[4 * size];
+        boolean[] shared = new boolean[4 * size];
+        int[] counts = new int[size];
+        for(int node=0; node<size; node++){
+            addNeighbor(neighbors, shared, counts, node, first.next(node));
+            addNeighbor(neighbors, shared, counts, node, first.prev(node));
+            addNeighbor(neighbors, shared, counts, node, second.next(node));
+            addNeighbor(neighbors, shared, counts, node, second.prev(node));
+        }
+
+        // the unvisited nodes, removal by swapping with the last one
+        int[] unvisited = new int[size];
+        int[] positions = new int[size];
+        for(int i=0; i<size; i++){
+            unvisited[i] = i;
+            positions[i] = i;
+        }
+        int remaining = size;
+
+        int[] child = new int[size];
+        int current = first.get(random.nextInt(size));
+        for(int i=0; i<size; i++){
+            child[i] = current;
+
+            int last = unvisited[--remaining];
+            unvisited[positions[current]] = last;
+            positions[last] = positions[current];
+            positions[current] = -1;
+            for(int j=0; j<counts[current]; j++){
+                removeNeighbor(neighbors, shared, counts, neighbors[4 * current + j], current);
+            }
+            if(remaining == 0){
+                break;
+            }
+
+            // a shared edge first, otherwise the neighbor with the fewest own neighbors left
+            int next = -1;
+            boolean nextShared = false;
+            for(int j=0; j<counts[current]; j++){
+                int neighbor = neighbors[4 * current + j];
+                boolean isShared = shared[4 * current + j];
+                if(next < 0 || (isShared && !nextShared)
+                        || (isShared == nextShared && counts[neighbor] < counts[next])){
+                    next = neighbor;
+                    nextShared = isShared;
+                }
+            }
+
+            // a dead end, take the nearest unvisited candidate or any unvisited node
+            for(int rank=0; next<0 && rank<candidates.size(); rank++){
+                int candidate = candidates.get(current, rank);
+                if(positions[candidate] >= 0){
+                    next = candidate;
+                }
+            }
+            if(next < 0){
+                next = unvisited[random.nextInt(remaining)];
+            }
+            current = next;
+        }
+
+        return child;
+    }
+
+    private static void addNeighbor(int[] neighbors, boolean[] shared, int[] counts, int node, int neighbor){
+        for(int j=0; j<counts[node]; j++){
+            if(neighbors[4 * node + j] == neighbor){
+                shared[4 * node + j] = true;
+                return;
+            }
+        }
+        neighbors[4 * node + counts[node]] = neighbor;
+        shared[4 * node + counts[node]] = false;
+        counts[node]++;
+    }
+
+    private static void removeNeighbor(int[] neighbors, boolean[] shared, int[] counts, int node, int neighbor){
+        for(int j=0; j<counts[node]; j++){
+            if(neighbors[4 * node + j] == neighbor){
+                int last = 4 * node + --counts[node];
+                neighbors[4 * node + j] = neighbors[last];
+                shared[4 * node + j] = shared[last];
+                return;
+            }
+        }
+    }
+
+    private static final Comparator<Tour> BY_DISTANCE = new Comparator<Tour>() {
+        @Override
+        public int compare(Tour a, Tour b) {
+            return Integer.compare(a.getDistance(), b.getDistance());
+        }
+    };
+
+    /**
+     * Creates and optimizes the children of a range.
+     */
+    private class OffspringTask extends RecursiveAction {
+        private final Tour[] children;
+        private final SplittableRandom[] randoms;
+        private final int from;
+        private final int to;
+
+        OffspringTask(Tour[] children, SplittableRandom[] randoms, int from, int to){
+            this.children = children;
+            this.randoms = randoms;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > 1){
+                int middle = (from + to) >>> 1;
+                invokeAll(new OffspringTask(children, randoms, from, middle),
+                        new OffspringTask(children, randoms, middle, to));
+                return;
+            }
+
+            SplittableRandom random = randoms[from];
+            Tour first = select(random);
+            Tour second = select(random);
+            Tour child = new Tour(first);
+            child.setOrder(crossover(first, second, random));
+            localSearch.get().optimize(child);
+            children[from] = child;
+        }
+    }
+
+    /**
+     * Perturbs and optimizes the tours of a range.
+     */
+    private class PerturbTask extends RecursiveAction {
+        private final Tour[] tours;
+        private final SplittableRandom[] randoms;
+        private final int from;
+        private final int to;
+
+        PerturbTask(Tour[] tours, SplittableRandom[] randoms, int from, int to){
+            this.tours = tours;
+            this.randoms = randoms;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > 1){
+                int middle = (from + to) >>> 1;
+                invokeAll(new PerturbTask(tours, randoms, from, middle), new PerturbTask(tours, randoms, middle, to));
+                return;
+            }
+
+            perturb(tours[from], randoms[from]);
+            localSearch.get().optimize(tours[from]);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package de.metal_land.tsp;
+
+/**
+ * The distance functions of the TSPLIB, given by the EDGE_WEIGHT_TYPE of a problem.
+ * @author nieh
+ */
+public enum Metric {
+    /**
+     * The euclidean distance rounded to the nearest integer.
+     */
+    EUC_2D {
+        @Override
+        public int distance(double x1, double y1, double x2, double y2) {
+            double dx = x1 - x2;
+            double dy = y1 - y2;
+
+            return (int) (Math.sqrt(dx * dx + dy * dy) + 0.5);
+        }
+    },
+
+    /**
+     * The euclidean distance rounded up.
+     */
+    CEIL_2D {
+        @Override
+        public int distance(double x1, double y1, double x2, double y2) {
+            double dx = x1 - x2;
+            double dy = y1 - y2;
+
+            return (int) Math.ceil(Math.sqrt(dx * dx + dy * dy));
+        }
+    },
+
+    /**
+     * The distance on the earth, the coordinates are latitude and longitude in the format DDD.MM.
+     */
+    GEO {
+        private static final double PI = 3.141592;
+        private static final double RRR = 6378.388;
+
+        @Override
+        public int distance(double x1, double y1, double x2, double y2) {
+            double latitude1 = radians(x1);
+            double longitude1 = radians(y1);
+            double latitude2 = radians(x2);
+            double longitude2 = radians(y2);
+
+            double q1 = Math.cos(longitude1 - longitude2);
+            double q2 = Math.cos(latitude1 - latitude2);
+            double q3 = Math.cos(latitude1 + latitude2);
+
+            return (int) (RRR * Math.acos(0.5 * ((1.0 + q1) * q2 - (1.0 - q1) * q3)) + 1.0);
+        }
+
+        @Override
+        public boolean isPlanar() {
+            return false;
+        }
+
+        private double radians(double coordinate){
+            int degrees = (int) coordinate;
+            double minutes = coordinate - degrees;
+
+            return PI * (degrees + 5.0 * minutes / 3.0) / 180.0;
+        }
+    },
+
+    /**
+     * The pseudo euclidean distance of the att problems.
+     */
+    ATT {
+        @Override
+        public int distance(double x1, double y1, double x2, double y2) {
+            double a = x1 - x2;
+            double b = y1 - y2;
+
+            double calculated = Math.sqrt((a * a + b * b) / 10.0);
+            int result = (int) Math.round(calculated);
+
+            return (result < calculated)? result + 1 : result;
+        }
+    },
+
+    /**
+     * The distances are given as matrix, they can not be calculated from the coordinates.
+     */
+    EXPLICIT {
+        @Override
+        public int distance(double x1, double y1, double x2, double y2) {
+            throw new UnsupportedOperationException("Explicit distances can not be calculated from coordinates");
+        }
+
+        @Override
+        public boolean hasCoordinates() {
+            return false;
+        }
+
+        @Override
+        public boolean isPlanar() {
+            return false;
+        }
+    };
+
+    /**
+     * Calculates the distance between two points.
+     * @param x1 The x value of the first point.
+     * @param y1 The y value of the first point.
+     * @param x2 The x value of the second point.
+     * @param y2 The y value of the second point.
+     * @return The distance.
+     */
+    public abstract int distance(double x1, double y1, double x2, double y2);
+
+    /**
+     * @return True if the distance is calculated from the coordinates of the nodes.
+     */
+    public boolean hasCoordinates(){
+        return true;
+    }
+
+    /**
+     * @return True if the distance grows with the euclidean distance of the coordinates in the plane, so the
+     * nearest nodes may be found by a {@link KdTree}.
+     */
+    public boolean isPlanar(){
+        return true;
+    }
+}
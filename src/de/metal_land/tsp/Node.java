@@ -1,25 +1,46 @@
 package de.metal_land.tsp;
 
-import lombok.*;
-import lombok.extern.java.Log;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 
 /**
- * A node in a Route represented by the X and Y values.
+ * A node in a Route, a view on the coordinates of the problem at its index. Two nodes are equal if they view the
+ * same index of the same coordinates.
  * @author nieh
  */
-@Data
-@Log
+@Getter
+@EqualsAndHashCode
 @AllArgsConstructor
-@NoArgsConstructor
 public class Node implements Comparable<Node>{
-    @Setter(AccessLevel.NONE)
-    private String name = "";
+    /**
+     * The coordinates of all nodes of the problem.
+     */
+    private final Coordinates coordinates;
+
+    /**
+     * The position of the node in the problem, used to address it in the coordinates and the distance cache.
+     */
+    private final int index;
+
+    public String getName(){
+        return coordinates.getName(index);
+    }
+
+    public double getX(){
+        return coordinates.getX(index);
+    }
 
-    @Setter(AccessLevel.NONE)
-    private int x = 0;
+    public double getY(){
+        return coordinates.getY(index);
+    }
 
-    @Setter(AccessLevel.NONE)
-    private int y = 0;
+    /**
+     * @return The distance function of the problem.
+     */
+    public Metric getMetric(){
+        return coordinates.getMetric();
+    }
 
     /**
      * Calculates the distance form this Node to the given target Node.
@@ -27,17 +48,16 @@ public class Node implements Comparable<Node>{
      * @return The distance.
      */
     public int distanceTo(Node node){
-        int a = x - node.getX();
-        int b = y - node.getY();
-
-        double calculated = Math.sqrt((a * a + b * b) / 10);
-        int result = (int) Math.round(calculated);
-
-        return (result < calculated)? result + 1 : result;
+        return getMetric().distance(getX(), getY(), node.getX(), node.getY());
     }
 
     @Override
     public int compareTo(Node o) {
         return getName().compareTo(o.getName());
     }
+
+    @Override
+    public String toString() {
+        return "Node(name=" + getName() + ", x=" + getX() + ", y=" + getY() + ", index=" + index + ")";
+    }
 }
@@ -0,0 +1,58 @@
+package de.metal_land.tsp;
+
+import java.util.Arrays;
+
+/**
+ * A FIFO of node indices without duplicates. A node not in the queue has its don't-look bit set.
+ * @author nieh
+ */
+class NodeQueue {
+    private final int[] queue;
+    private final boolean[] queued;
+    private int head = 0;
+    private int count = 0;
+
+    NodeQueue(int size){
+        queue = new int[size];
+        queued = new boolean[size];
+    }
+
+    /**
+     * @return The number of nodes the queue can hold.
+     */
+    int capacity(){
+        return queue.length;
+    }
+
+    void clear(){
+        Arrays.fill(queued, false);
+        head = 0;
+        count = 0;
+    }
+
+    boolean isEmpty(){
+        return count == 0;
+    }
+
+    /**
+     * Adds the node if it is not in the queue yet.
+     * @param node The index of the node.
+     */
+    void push(int node){
+        if(!queued[node]){
+            queued[node] = true;
+            int tail = head + count;
+            queue[(tail >= queue.length)? tail - queue.length : tail] = node;
+            count++;
+        }
+    }
+
+    int pop(){
+        int node = queue[head];
+        head = (head + 1 == queue.length)? 0 : head + 1;
+        count--;
+        queued[node] = false;
+
+        return node;
+    }
+}
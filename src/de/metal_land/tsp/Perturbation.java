@@ -0,0 +1,27 @@
+package de.metal_land.tsp;
+
+import lombok.Data;
+
+/**
+ * Kicks the best route with random double bridge moves, the next stage starts from the kicked route.
+ * Combined with an improvement in a repeated {@link Pipeline} it gives an iterated local search.
+ * @author nieh
+ */
+@Data
+public class Perturbation implements Stage {
+    /**
+     * The number of double bridge moves applied.
+     */
+    private int kicks = 1;
+
+    @Override
+    public void run(TSP problem) {
+        Tour tour = new Tour(problem.takeStartRoute());
+        LinKernighan kicker = new LinKernighan(problem.getCandidates());
+        for(int i=0; i<kicks; i++){
+            kicker.kick(tour, problem.getRandom());
+        }
+
+        problem.restartFrom(tour.toRoute());
+    }
+}
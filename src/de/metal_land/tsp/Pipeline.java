@@ -0,0 +1,80 @@
+package de.metal_land.tsp;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs stages one after the other, for example a construction followed by improvement searches.
+ * The stages may be repeated for a number of rounds, so a pipeline of an improvement and a perturbation
+ * nested into a pipeline after a construction gives an iterated search. The time limit of the stop condition
+ * is for the whole pipeline, the outermost pipeline fixes its end and every stage stops there. The other limits
+ * apply to every stage, the rounds end early if the search is cancelled, the time is over or the target
+ * distance is reached.
+ * @author nieh
+ */
+public class Pipeline implements Stage {
+    @Getter
+    private final List<Stage> stages;
+
+    /**
+     * The number of times the stages are run.
+     */
+    @Getter
+    private final int rounds;
+
+    /**
+     * @param stages The stages to run once.
+     */
+    public Pipeline(Stage... stages){
+        this(1, stages);
+    }
+
+    /**
+     * @param rounds The number of times the stages are run.
+     * @param stages The stages to run.
+     */
+    public Pipeline(int rounds, Stage... stages){
+        this.rounds = rounds;
+        this.stages = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(stages)));
+    }
+
+    @Override
+    public void run(TSP problem) {
+        boolean fixed = problem.fixDeadline();
+        try {
+            for(int round=0; round<rounds; round++){
+                for (Stage stage : stages) {
+                    if(isFinished(problem)){
+                        return;
+                    }
+                    stage.run(problem);
+                }
+            }
+        } finally {
+            if(fixed){
+                problem.clearDeadline();
+            }
+        }
+    }
+
+    private boolean isFinished(TSP problem){
+        int target = problem.getStopCondition().getTargetDistance();
+        Route best = problem.getBestRoute();
+        return problem.isCancelled() || Thread.currentThread().isInterrupted()
+                || (best != null && (problem.isPastDeadline() || target > 0 && best.getDistance() <= target));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Stage stage : stages) {
+            builder.append((builder.length() > 0)? " -> " : "").append(stage);
+        }
+
+        return (rounds != 1)? rounds + " x (" + builder + ")" : builder.toString();
+    }
+}
@@ -0,0 +1,77 @@
+package de.metal_land.tsp;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The messages between the {@link Coordinator} and its {@link Worker}s over TCP. Every message is a type byte
+ * followed by big endian values of {@link DataOutputStream}.
+ * <ul>
+ *     <li>PROBLEM: magic number, version, the length and the bytes of the problem in the {@link BinaryInstance}
+ *     format, the improvement ordinal, a flag and the seed, and the round time in milliseconds.</li>
+ *     <li>TOUR: the distance, the number of nodes and the node indices in their order. The coordinator sends the
+ *     new best tour of all workers, a worker sends every new best tour of its own.</li>
+ *     <li>STOP: the worker stops its search and closes the connection.</li>
+ * </ul>
+ * @author nieh
+ */
+final class Protocol {
+    static final int MAGIC = 0x54535057;
+    static final int VERSION = 1;
+
+    static final byte PROBLEM = 1;
+    static final byte TOUR = 2;
+    static final byte STOP = 3;
+
+    private Protocol(){
+    }
+
+    /**
+     * Writes a TOUR message, it is not flushed.
+     * @param out The stream to write to.
+     * @param route The route to send.
+     * @throws IOException If the stream fails.
+     */
+    static void writeTour(DataOutputStream out, Route route) throws IOException {
+        List<Node> nodes = route.getRoute();
+        out.writeByte(TOUR);
+        out.writeInt(route.getDistance());
+        out.writeInt(nodes.size());
+        for (Node node : nodes) {
+            out.writeInt(node.getIndex());
+        }
+    }
+
+    /**
+     * Reads the body of a TOUR message, the distance is calculated again and every node has to occur once.
+     * @param in The stream to read from, the type byte is already read.
+     * @param problem The problem of the tour.
+     * @return The route.
+     * @throws IOException If the stream fails or the tour does not fit the problem.
+     */
+    static Route readTour(DataInputStream in, TSP problem) throws IOException {
+        in.readInt();
+        int size = in.readInt();
+        List<Node> nodes = problem.getNodes();
+        if(size != nodes.size()){
+            throw new ProtocolException(String.format("Tour of %d nodes for a problem of %d nodes", size, nodes.size()));
+        }
+
+        boolean[] visited = new boolean[size];
+        List<Node> routeList = new ArrayList<>(size);
+        for(int i=0; i<size; i++){
+            int index = in.readInt();
+            if(index < 0 || index >= size || visited[index]){
+                throw new ProtocolException("Invalid node in tour: " + index);
+            }
+            visited[index] = true;
+            routeList.add(nodes.get(index));
+        }
+
+        return new Route(routeList, problem.getDistances());
+    }
+}
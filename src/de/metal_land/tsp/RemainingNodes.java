@@ -0,0 +1,95 @@
+package de.metal_land.tsp;
+
+/**
+ * A set of the nodes not visited yet, which answers the query for the nearest remaining node.
+ * Every thread has to use its own set.
+ * @author nieh
+ */
+public interface RemainingNodes {
+
+    /**
+     * @return The number of nodes left.
+     */
+    public int size();
+
+    /**
+     * @param node The index of the node.
+     * @return True if the node was not removed yet.
+     */
+    public boolean contains(int node);
+
+    /**
+     * Removes the node from the set.
+     * @param node The index of the node.
+     */
+    public void remove(int node);
+
+    /**
+     * Returns the remaining node nearest to the given node.
+     * @param node The index of the node.
+     * @return The index of the nearest node or -1 if no node is left.
+     */
+    public int nearest(int node);
+
+    /**
+     * Finds the nearest node by looking at all remaining nodes, for problems without coordinates.
+     */
+    public static class Scan implements RemainingNodes {
+        private final DistanceCache distances;
+        private final int[] nodes;
+        private final int[] positions;
+        private int size;
+
+        public Scan(DistanceCache distances){
+            this.distances = distances;
+            size = distances.size();
+            nodes = new int[size];
+            positions = new int[size];
+            for(int i=0; i<size; i++){
+                nodes[i] = i;
+                positions[i] = i;
+            }
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(int node) {
+            return positions[node] < size;
+        }
+
+        @Override
+        public void remove(int node) {
+            int position = positions[node];
+            if(position >= size){
+                return;
+            }
+
+            // move the last remaining node into the gap
+            size--;
+            int last = nodes[size];
+            nodes[position] = last;
+            positions[last] = position;
+            nodes[size] = node;
+            positions[node] = size;
+        }
+
+        @Override
+        public int nearest(int node) {
+            int nearest = -1;
+            int nearestDistance = Integer.MAX_VALUE;
+            for(int i=0; i<size; i++){
+                int distance = distances.distance(node, nodes[i]);
+                if(distance < nearestDistance && nodes[i] != node){
+                    nearest = nodes[i];
+                    nearestDistance = distance;
+                }
+            }
+
+            return nearest;
+        }
+    }
+}
@@ -4,6 +4,8 @@ import lombok.Getter;
 import lombok.extern.java.Log;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Represents a Set of Nodes in a fixed sequence.
@@ -13,17 +15,36 @@ import java.util.*;
 public class Route implements Comparable<Route>{
     final private List<Node> route;
 
+    /**
+     * The distances between the nodes of the route.
+     */
+    @Getter
+    final private DistanceCache distances;
+
     /**
      * The complete distance of the route as Roundtrip.
      */
     @Getter
     final private Integer distance;
 
-    public Route(List<Node> route){
-        this.route = route;
+    public Route(List<Node> route, DistanceCache distances){
+        this.route = Collections.unmodifiableList(new ArrayList<>(route));
+        this.distances = distances;
         this.distance = calculateDistance();
     }
 
+    /**
+     * Creates a snapshot of a route with an already known distance.
+     * @param route The nodes of the route, the list is not copied.
+     * @param distances The distances between the nodes.
+     * @param distance The complete distance of the route.
+     */
+    Route(List<Node> route, DistanceCache distances, int distance){
+        this.route = Collections.unmodifiableList(route);
+        this.distances = distances;
+        this.distance = distance;
+    }
+
     /**
      * Calculates the complete distance of the round trip.
      * @return The calculated Distance.
@@ -32,18 +53,18 @@ public class Route implements Comparable<Route>{
         Node lastNode = null;
         int distance = 0;
 
-        for (Node node : getRoute()) {
+        for (Node node : route) {
             if(lastNode == null){
                 lastNode = node;
                 continue;
             }
 
-            distance += lastNode.distanceTo(node);
+            distance += distances.distance(lastNode.getIndex(), node.getIndex());
             lastNode = node;
         }
 
         if (lastNode != null) {
-            distance += lastNode.distanceTo(getRoute().get(0));
+            distance += distances.distance(lastNode.getIndex(), route.get(0).getIndex());
         }
 
         return distance;
@@ -54,143 +75,192 @@ public class Route implements Comparable<Route>{
      * @return The bests neighbor.
      */
     public Route getBestNeighbor(){
-        List<Route> neighbors = new ArrayList<>();
-        List<Node> route = getRoute();
-
-        for(int i=0;i<route.size()-1;i++){
-            List<Node> routeCopy = new ArrayList<>(route);
-            Node n = routeCopy.get(i);
-            routeCopy.set(i, routeCopy.get(i+1));
-            routeCopy.set(i+1, n);
-
-            neighbors.add(new Route(routeCopy));
+        Tour tour = new Tour(this);
+        int bestIndex = 0;
+        int bestDelta = Integer.MAX_VALUE;
+
+        for(int i=0;i<tour.size()-1;i++){
+            int delta = tour.swapDelta(i, i+1);
+            if(delta < bestDelta){
+                bestIndex = i;
+                bestDelta = delta;
+            }
         }
-        Collections.sort(neighbors);
+        tour.swap(bestIndex, bestIndex+1);
 
-        return neighbors.get(0);
+        return tour.toRoute();
     }
 
     /**
-     * Get the best neigbhor, who is not on the tabu list.
-     * @param tabuList The list with forbidden changes.
+     * Get the best neigbhor, who is not on the tabu list. Besides all swaps of neighboring nodes some random swaps
+     * are sampled in parallel on the given pool. A tabu swap is taken anyway if it leads to a new best route.
+     * @param tabuList The list with forbidden changes, the taken swap is added to it.
+     * @param bestDistance The distance of the best route found so far.
+     * @param pool The pool to sample the random swaps on.
+     * @param random The random source, the samples only depend on its state and not on the scheduling.
      * @return The bests neighbor.
      */
-    public Route getBestNeighbor(final Deque<Node[]> tabuList){
-        final List<Route> neighbors = new ArrayList<>();
-        final List<Node> route = getRoute();
-        final Map<Route, Node[]> changes = new HashMap<>();
-
-        for(int i=0;i<route.size()-1;i++){
-            List<Node> routeCopy = new ArrayList<>(route);
-
-            boolean inList = false;
-            for (Node[] nodes : tabuList) {
-                inList = Arrays.equals(nodes, new Node[]{routeCopy.get(i), routeCopy.get(i + 1)})
-                        | Arrays.equals(nodes, new Node[]{routeCopy.get(i + 1), routeCopy.get(i)});
+    public Route getBestNeighbor(TabuList tabuList, int bestDistance, ForkJoinPool pool, SplittableRandom random){
+        Tour tour = new Tour(this);
+        Move best = null;
+
+        // distances calculated on demand are faster in bulk from the coordinates
+        int[] deltas = null;
+        if(distances instanceof LazyDistanceCache){
+            deltas = new int[tour.size()];
+            tour.adjacentSwapDeltas(deltas);
+        }
 
-                if(inList){
-                    break;
-                }
+        for(int i=0;i<tour.size()-1;i++){
+            int delta = (deltas != null)? deltas[i] : tour.swapDelta(i, i + 1);
+            Move move = createMove(tour, tabuList, bestDistance, i, i + 1, delta);
+            if(move != null && (best == null || move.compareTo(best) < 0)){
+                best = move;
             }
+        }
 
-            if(!inList){
-                Node n = routeCopy.get(i);
-                routeCopy.set(i, routeCopy.get(i+1));
-                routeCopy.set(i+1, n);
-
-                Route newRoute = new Route(routeCopy);
-                changes.put(newRoute, new Node[]{routeCopy.get(i), routeCopy.get(i + 1)});
+        best = Move.better(best, pool.invoke(new RandomMoveTask(tour, tabuList, bestDistance, random.split(), RANDOM_TASKS)));
 
-                neighbors.add(newRoute);
-            }
+        if(best == null){
+            return this;
         }
 
-        List<Thread> threadList = new ArrayList<>(16);
-        for(int i=0; i<16;i++){
-            Thread thread = new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    Route newRoute = addBestRandomNeighbor(tabuList, changes);
-                    synchronized (route){
-                        neighbors.add(newRoute);
-                    }
-                }
-            });
-            thread.start();
-            threadList.add(thread);
-        }
-        for (Thread thread : threadList) {
-            try {
-                thread.join();
-            } catch (InterruptedException e) {
-                e.printStackTrace();  //Template
-            }
-        }
+        tabuList.add(tour.get(best.first), tour.get(best.second));
+        tour.swap(best.first, best.second);
 
+        return tour.toRoute();
+    }
 
-        Collections.sort(neighbors);
-        tabuList.addFirst(changes.get(neighbors.get(0)));
+    /**
+     * The number of tasks sampling random swaps for one neighbor search.
+     */
+    private static final int RANDOM_TASKS = 16;
 
-        return neighbors.get(0);
+    /**
+     * @param size The number of nodes of the route.
+     * @return The number of swaps looked at by one call of
+     * {@link #getBestNeighbor(TabuList, int, ForkJoinPool, SplittableRandom)}.
+     */
+    static long neighborMoves(int size){
+        return (size - 1) + (long) RANDOM_TASKS * (long) Math.ceil(size * 0.3);
+    }
+
+    /**
+     * Creates the swap of the nodes at the two positions.
+     * @param delta The change of the distance by the swap.
+     * @return The move or null if it is forbidden by the tabu list.
+     */
+    private Move createMove(Tour tour, TabuList tabuList, int bestDistance, int first, int second, int delta){
+        if(!tabuList.isAllowed(tour.get(first), tour.get(second), distance + delta, bestDistance)){
+            return null;
+        }
+
+        return new Move(first, second, delta);
     }
 
     /**
-     * Adds some random Neighbors to the List.
+     * Finds the best of some random swaps, which are not on the tabu list.
+     * @param tour The tour to search in, only read.
      * @param tabuList The list with forbidden changes.
-     * @param changes A map to which the changed values should be added.
-     * @return A random neighbor route.
+     * @param bestDistance The distance of the best route found so far.
+     * @param random The random source of this task.
+     * @return The best random move or null if all were forbidden.
      */
-    private Route addBestRandomNeighbor(Deque<Node[]> tabuList, Map<Route, Node[]> changes) {
-        List<Route> neighbors = new ArrayList<>();
-        List<Node> route = getRoute();
-        Map<Route, Node[]> innerChanges = new HashMap<>();
-
-        // Add some random generated routes
-        final Random rnd = new Random();
-        for(int i = 0; i<getRoute().size()*0.3; i++){
-            List<Node> routeCopy = new ArrayList<>(route);
-            int first = rnd.nextInt(routeCopy.size());
-            int second = rnd.nextInt(routeCopy.size());
-
-            boolean inList = false;
-            for (Node[] nodes : tabuList) {
-                inList = Arrays.equals(nodes, new Node[]{routeCopy.get(first), routeCopy.get(second)})
-                        | Arrays.equals(nodes, new Node[]{routeCopy.get(second), routeCopy.get(first)});
-
-                if(inList){
-                    break;
+    private Move getBestRandomMove(Tour tour, TabuList tabuList, int bestDistance, SplittableRandom random) {
+        Move best = null;
+
+        for(int i = 0; i<tour.size()*0.3; i++){
+            int first = random.nextInt(tour.size());
+            int second = random.nextInt(tour.size());
+
+            if(first != second){
+                int delta = tour.swapDelta(first, second);
+                if((best == null || delta < best.delta)
+                        && tabuList.isAllowed(tour.get(first), tour.get(second), distance + delta, bestDistance)){
+                    best = new Move(first, second, delta);
                 }
             }
+        }
 
-            if(!inList){
-                Node n = routeCopy.get(first);
-                routeCopy.set(first, routeCopy.get(second));
-                routeCopy.set(second, n);
+        return best;
+    }
 
-                Route newRoute = new Route(routeCopy);
-                innerChanges.put(newRoute, new Node[]{routeCopy.get(first), routeCopy.get(second)});
+    /**
+     * Splits the sampling of random swaps into tasks, every task has its own random stream and keeps its own best
+     * move, so the results are only merged when the tasks are joined.
+     */
+    private class RandomMoveTask extends RecursiveTask<Move> {
+        private final Tour tour;
+        private final TabuList tabuList;
+        private final int bestDistance;
+        private final SplittableRandom random;
+        private final int tasks;
+
+        RandomMoveTask(Tour tour, TabuList tabuList, int bestDistance, SplittableRandom random, int tasks){
+            this.tour = tour;
+            this.tabuList = tabuList;
+            this.bestDistance = bestDistance;
+            this.random = random;
+            this.tasks = tasks;
+        }
 
-                neighbors.add(newRoute);
+        @Override
+        protected Move compute() {
+            if(tasks == 1){
+                return getBestRandomMove(tour, tabuList, bestDistance, random);
             }
-        }
 
-        Collections.sort(neighbors);
-        synchronized(this.route){
-            changes.put(neighbors.get(0), innerChanges.get(neighbors.get(0)));
-        }
+            RandomMoveTask left = new RandomMoveTask(tour, tabuList, bestDistance, random.split(), tasks / 2);
+            RandomMoveTask right = new RandomMoveTask(tour, tabuList, bestDistance, random, tasks - tasks / 2);
+            left.fork();
+            Move move = right.compute();
 
-        return neighbors.get(0);
+            return Move.better(left.join(), move);
+        }
     }
 
     /**
-     * @return A copy of the route as List.
+     * @return The route as unmodifiable List.
      */
     public List<Node> getRoute() {
-        return new LinkedList<>(route);
+        return route;
     }
 
     @Override
     public int compareTo(Route o) {
         return getDistance().compareTo(o.getDistance());
     }
+
+    /**
+     * A swap of the nodes at two positions of the route.
+     */
+    private static class Move implements Comparable<Move> {
+        private final int first;
+        private final int second;
+        private final int delta;
+
+        Move(int first, int second, int delta){
+            this.first = first;
+            this.second = second;
+            this.delta = delta;
+        }
+
+        @Override
+        public int compareTo(Move o) {
+            return Integer.compare(delta, o.delta);
+        }
+
+        /**
+         * @return The move with the smaller delta, the first one on equal deltas, null only if both are null.
+         */
+        static Move better(Move a, Move b){
+            if(a == null){
+                return b;
+            } else if(b == null){
+                return a;
+            }
+
+            return (b.compareTo(a) < 0)? b : a;
+        }
+    }
 }
@@ -0,0 +1,216 @@
+package de.metal_land.tsp;
+
+import lombok.Data;
+
+import java.util.SplittableRandom;
+
+/**
+ * Improves the route by simulated annealing. Every move is a random 2-opt or or-opt move to a candidate of a
+ * random node, scored in constant time by its change of the distance. Longer tours are accepted with the
+ * probability exp(-delta / temperature), the temperature falls by the cooling schedule after every
+ * movesPerTemperature moves. Below the end temperature the search is heated again and continues from its best
+ * tour. Every temperature counts as iteration of the stop condition.
+ * @author nieh
+ */
+@Data
+public class SimulatedAnnealing implements Stage {
+    /**
+     * The number of moves sampled to choose the start temperature.
+     */
+    private static final int SAMPLE_MOVES = 1000;
+
+    /**
+     * The temperature at the start and after every reheating, if 0 it is chosen so about half of the
+     * longer tours are accepted.
+     */
+    private double startTemperature = 0;
+
+    /**
+     * The temperature at which the search is heated again, if 0 a thousandth of the start temperature.
+     */
+    private double endTemperature = 0;
+
+    /**
+     * The schedule to lower the temperature.
+     */
+    private Cooling cooling = Cooling.GEOMETRIC;
+
+    /**
+     * The factor the first temperature is multiplied with, between 0 and 1.
+     */
+    private double coolingFactor = 0.95;
+
+    /**
+     * The number of moves tried at every temperature, if 0 ten times the number of nodes.
+     */
+    private int movesPerTemperature = 0;
+
+    /**
+     * The maximal length of the segments moved by or-opt moves.
+     */
+    private int maxSegmentLength = 3;
+
+    @Override
+    public void run(TSP problem) {
+        long start = System.nanoTime();
+        SolverMetrics metrics = problem.getMetrics();
+        CandidateLists candidates = problem.getCandidates();
+        SplittableRandom random = problem.getRandom().split();
+        metrics.searchStarted();
+
+        Tour tour = new Tour(problem.takeStartRoute());
+        Tour best = new Tour(tour);
+        int size = tour.size();
+        int moves = (movesPerTemperature > 0)? movesPerTemperature : 10 * size;
+        double hot = (startTemperature > 0)? startTemperature : sampleTemperature(tour, candidates, random);
+        double cold = (endTemperature > 0)? endTemperature : hot / 1000;
+        double temperature = hot;
+
+        long iterations = 0;
+        int stagnation = 0;
+        while(size >= 8 && !problem.isStopped(start, iterations, stagnation)){
+            boolean improved = false;
+            for(int i=0; i<moves; i++){
+                int delta = move(tour, candidates, random, temperature);
+                if(delta < 0 && tour.getDistance() < best.getDistance()){
+                    best.copyFrom(tour);
+                    improved = true;
+                }
+            }
+            metrics.addEvaluatedMoves(moves);
+
+            if(improved){
+                problem.offerBestRoute(best.toRoute());
+                stagnation = 0;
+            } else {
+                stagnation++;
+            }
+
+            temperature = cooling.next(temperature, hot, coolingFactor);
+            if(temperature < cold){
+                temperature = hot;
+                tour.copyFrom(best);
+            }
+            iterations++;
+            metrics.iterationFinished();
+        }
+        metrics.phaseFinished(SolverMetrics.Phase.IMPROVEMENT, start);
+    }
+
+    /**
+     * Tries one random move and applies it if it is accepted at the temperature.
+     * @return The change of the distance, 0 if the move was rejected.
+     */
+    private int move(Tour tour, CandidateLists candidates, SplittableRandom random, double temperature){
+        int a = random.nextInt(tour.size());
+        int c = candidates.get(a, random.nextInt(candidates.size()));
+
+        if(random.nextBoolean()){
+            int delta = tour.twoOptDelta(a, c);
+            if(delta != 0 && accept(delta, temperature, random)){
+                tour.twoOpt(a, c);
+                return delta;
+            }
+        } else {
+            // move the segment starting at a behind its candidate c
+            int sL = a;
+            int length = 1 + random.nextInt(maxSegmentLength);
+            for(int i=1; i<length && tour.next(sL) != c; i++){
+                sL = tour.next(sL);
+            }
+            if(isInSegment(tour, a, sL, c)){
+                return 0;
+            }
+
+            boolean reversed = random.nextBoolean();
+            int delta = tour.orOptDelta(a, sL, c, reversed);
+            if(delta != 0 && accept(delta, temperature, random)){
+                tour.orOpt(a, sL, c, reversed);
+                return delta;
+            }
+        }
+
+        return 0;
+    }
+
+    private static boolean accept(int delta, double temperature, SplittableRandom random){
+        return delta < 0 || random.nextDouble() < Math.exp(-delta / temperature);
+    }
+
+    private static boolean isInSegment(Tour tour, int s1, int sL, int node){
+        int length = tour.position(sL) - tour.position(s1);
+        if(length < 0){
+            length += tour.size();
+        }
+        int offset = tour.position(node) - tour.position(s1);
+        if(offset < 0){
+            offset += tour.size();
+        }
+
+        return offset <= length;
+    }
+
+    /**
+     * Chooses the temperature at which a move of the average increase of the distance is accepted with a
+     * probability of one half.
+     */
+    private double sampleTemperature(Tour tour, CandidateLists candidates, SplittableRandom random){
+        long sum = 0;
+        int count = 0;
+        for(int i=0; i<SAMPLE_MOVES; i++){
+            int a = random.nextInt(tour.size());
+            int delta = tour.twoOptDelta(a, candidates.get(a, random.nextInt(candidates.size())));
+            if(delta > 0){
+                sum += delta;
+                count++;
+            }
+        }
+
+        return (count > 0)? (double) sum / count / Math.log(2) : 1;
+    }
+
+    /**
+     * The schedules to lower the temperature.
+     */
+    public enum Cooling {
+        /**
+         * Multiplies the temperature with the cooling factor.
+         */
+        GEOMETRIC {
+            @Override
+            public double next(double temperature, double start, double factor) {
+                return temperature * factor;
+            }
+        },
+
+        /**
+         * The schedule of Lundy and Mees, T / (1 + beta * T). Beta is chosen so the first step equals the
+         * geometric one, later the temperature falls slower.
+         */
+        LUNDY_MEES {
+            @Override
+            public double next(double temperature, double start, double factor) {
+                double beta = (1 / factor - 1) / start;
+                return temperature / (1 + beta * temperature);
+            }
+        },
+
+        /**
+         * Lowers the temperature by the same amount every step, it reaches 0 after 1 / (1 - factor) steps.
+         */
+        LINEAR {
+            @Override
+            public double next(double temperature, double start, double factor) {
+                return temperature - (1 - factor) * start;
+            }
+        };
+
+        /**
+         * @param temperature The current temperature.
+         * @param start The start temperature.
+         * @param factor The cooling factor.
+         * @return The next temperature.
+         */
+        public abstract double next(double temperature, double start, double factor);
+    }
+}
@@ -0,0 +1,271 @@
+package de.metal_land.tsp;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts what the solver does, so its throughput can be watched while it runs. The counters may be updated from
+ * any thread, {@link #snapshot()} may be polled from any other thread.
+ * Every phase, every new best route and once per second the counters of the search are also published as
+ * JFR events, which cost nothing if no recording is running.
+ * @author nieh
+ */
+public class SolverMetrics {
+    private static final long STATISTICS_INTERVAL = 1000000000L;
+
+    /**
+     * The maximal number of points of the timeline, if it is full every second point is dropped.
+     */
+    private static final int TIMELINE_SIZE = 1024;
+
+    /**
+     * The timed phases of a solve.
+     */
+    public enum Phase {
+        PARSE, DISTANCES, CONSTRUCTION, IMPROVEMENT
+    }
+
+    private final LongAdder iterations = new LongAdder();
+    private final LongAdder evaluatedMoves = new LongAdder();
+    private final LongAdder tabuHits = new LongAdder();
+    private final LongAdder aspirations = new LongAdder();
+    private final LongAdder improvements = new LongAdder();
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+
+    /**
+     * The distances of the best routes over time, thinned out to at most TIMELINE_SIZE points.
+     */
+    private final List<Progress> timeline = new ArrayList<>();
+
+    private final long created = System.nanoTime();
+    private volatile long searchStart = 0;
+    private volatile int bestDistance = 0;
+    private final AtomicLong lastStatistics = new AtomicLong(System.nanoTime());
+
+    /**
+     * Adds the run time of a phase.
+     * @param phase The phase.
+     * @param start The start of the phase by {@link System#nanoTime()}.
+     */
+    public void phaseFinished(Phase phase, long start){
+        long duration = System.nanoTime() - start;
+        phaseNanos.addAndGet(phase.ordinal(), duration);
+
+        PhaseEvent event = new PhaseEvent();
+        if(event.isEnabled()){
+            event.phase = phase.name();
+            event.time = duration;
+            event.commit();
+        }
+    }
+
+    /**
+     * Marks the start of an improvement search, the move rate is measured from here.
+     */
+    public void searchStarted(){
+        searchStart = System.nanoTime();
+    }
+
+    /**
+     * Counts a finished iteration of the search and publishes the counters if the last publication is older than
+     * a second.
+     */
+    public void iterationFinished(){
+        iterations.increment();
+
+        long now = System.nanoTime();
+        long last = lastStatistics.get();
+        if(now - last >= STATISTICS_INTERVAL && lastStatistics.compareAndSet(last, now)){
+            StatisticsEvent event = new StatisticsEvent();
+            if(event.isEnabled()){
+                Snapshot snapshot = snapshot();
+                event.iterations = snapshot.getIterations();
+                event.evaluatedMoves = snapshot.getEvaluatedMoves();
+                event.movesPerSecond = snapshot.getMovesPerSecond();
+                event.tabuHits = snapshot.getTabuHits();
+                event.aspirations = snapshot.getAspirations();
+                event.bestDistance = snapshot.getBestDistance();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Counts moves whose change of the distance was calculated.
+     * @param count The number of moves.
+     */
+    public void addEvaluatedMoves(long count){
+        evaluatedMoves.add(count);
+    }
+
+    /**
+     * Counts a move which was rejected by the tabu list.
+     */
+    public void tabuHit(){
+        tabuHits.increment();
+    }
+
+    /**
+     * Counts a tabu move which was taken anyway, because it leads to a new best route.
+     */
+    public void aspiration(){
+        aspirations.increment();
+    }
+
+    /**
+     * Records a new best route.
+     * @param distance The distance of the route.
+     */
+    public void improved(int distance){
+        improvements.increment();
+        bestDistance = distance;
+        long elapsed = (System.nanoTime() - created) / 1000000;
+        synchronized (timeline) {
+            if(timeline.size() >= TIMELINE_SIZE){
+                thinTimeline();
+            }
+            timeline.add(new Progress(elapsed, distance));
+        }
+
+        ImprovementEvent event = new ImprovementEvent();
+        if(event.isEnabled()){
+            event.distance = distance;
+            event.iteration = iterations.sum();
+            event.commit();
+        }
+    }
+
+    /**
+     * Keeps every second point of the timeline, starting with the first one, so the whole run stays covered.
+     */
+    private void thinTimeline(){
+        int kept = 0;
+        for(int i=0; i<timeline.size(); i+=2){
+            timeline.set(kept++, timeline.get(i));
+        }
+        timeline.subList(kept, timeline.size()).clear();
+    }
+
+    /**
+     * @return The current values of all counters, consistent enough for monitoring.
+     */
+    public Snapshot snapshot(){
+        long searchNanos = (searchStart > 0)? System.nanoTime() - searchStart : 0;
+        long moves = evaluatedMoves.sum();
+
+        Map<Phase, Long> phases = new EnumMap<>(Phase.class);
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, phaseNanos.get(phase.ordinal()) / 1000000);
+        }
+
+        List<Progress> progress;
+        synchronized (timeline) {
+            progress = new ArrayList<>(timeline);
+        }
+
+        return new Snapshot(iterations.sum(), moves, (searchNanos > 0)? moves * 1e9 / searchNanos : 0,
+                tabuHits.sum(), aspirations.sum(), improvements.sum(), bestDistance,
+                Collections.unmodifiableMap(phases), Collections.unmodifiableList(progress));
+    }
+
+    /**
+     * The counters at one point in time.
+     */
+    @Value
+    public static class Snapshot {
+        long iterations;
+        long evaluatedMoves;
+
+        /**
+         * The evaluated moves per second since the start of the last search.
+         */
+        double movesPerSecond;
+        long tabuHits;
+        long aspirations;
+        long improvements;
+        int bestDistance;
+
+        /**
+         * The run time of every phase in milliseconds.
+         */
+        Map<Phase, Long> phases;
+
+        /**
+         * The distances of the new best routes, the older ones thinned out if there are too many.
+         */
+        List<Progress> timeline;
+    }
+
+    /**
+     * A new best route.
+     */
+    @Value
+    public static class Progress {
+        /**
+         * The time since the creation of the metrics in milliseconds.
+         */
+        long elapsed;
+        int distance;
+    }
+
+    @Name("de.metal_land.tsp.Phase")
+    @Label("Solver Phase")
+    @Category("TSP")
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+    }
+
+    @Name("de.metal_land.tsp.Improvement")
+    @Label("New Best Route")
+    @Category("TSP")
+    static class ImprovementEvent extends Event {
+        @Label("Distance")
+        int distance;
+
+        @Label("Iteration")
+        long iteration;
+    }
+
+    @Name("de.metal_land.tsp.Statistics")
+    @Label("Search Statistics")
+    @Description("The counters of the search, published at most once per second")
+    @Category("TSP")
+    static class StatisticsEvent extends Event {
+        @Label("Iterations")
+        long iterations;
+
+        @Label("Evaluated Moves")
+        long evaluatedMoves;
+
+        @Label("Moves per Second")
+        double movesPerSecond;
+
+        @Label("Tabu Hits")
+        long tabuHits;
+
+        @Label("Aspirations")
+        long aspirations;
+
+        @Label("Best Distance")
+        int bestDistance;
+    }
+}
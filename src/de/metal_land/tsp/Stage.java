@@ -0,0 +1,17 @@
+package de.metal_land.tsp;
+
+/**
+ * One step of a solver pipeline, for example a construction, an improvement search or a perturbation.
+ * A stage starts from {@link TSP#takeStartRoute()} and hands its routes to {@link TSP#offerBestRoute(Route)},
+ * a perturbation may set the route the next stage starts from with {@link TSP#restartFrom(Route)}.
+ * Searches should stop as soon as {@link TSP#isStopped(long, long, int)} is true, which includes the end of the
+ * time limit of the whole pipeline, other stages may check {@link TSP#isPastDeadline()}.
+ * @author nieh
+ */
+public interface Stage {
+    /**
+     * Runs the stage on the problem, whose distances have to be calculated.
+     * @param problem The problem to solve.
+     */
+    void run(TSP problem);
+}
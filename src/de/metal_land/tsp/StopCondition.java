@@ -0,0 +1,67 @@
+package de.metal_land.tsp;
+
+import lombok.Data;
+
+/**
+ * Decides when a search has to stop. A limit of 0 is not checked, the search stops as soon as one limit is reached.
+ * @author nieh
+ */
+@Data
+public class StopCondition {
+    /**
+     * The maximal run time of the search in milliseconds.
+     */
+    private long timeLimit = 0;
+
+    /**
+     * The maximal number of iterations.
+     */
+    private long maxIterations = 0;
+
+    /**
+     * The maximal number of iterations in a row without a new best route.
+     */
+    private int maxStagnation = 2000;
+
+    /**
+     * The search stops if the best route is not longer than this distance.
+     */
+    private int targetDistance = 0;
+
+    /**
+     * The search stops if the best route is at most this fraction longer than the lower bound, for example 0.01
+     * for one percent. Needs the lower bound of the problem.
+     */
+    private double targetGap = 0;
+
+    /**
+     * Checks if one of the limits is reached.
+     * @param elapsed The run time of the search so far in milliseconds.
+     * @param iterations The number of finished iterations.
+     * @param stagnation The number of iterations since the last new best route.
+     * @param bestDistance The distance of the best route.
+     * @return True if the search has to stop.
+     */
+    public boolean isReached(long elapsed, long iterations, int stagnation, int bestDistance){
+        return isReached(elapsed, iterations, stagnation, bestDistance, 0);
+    }
+
+    /**
+     * Checks if one of the limits is reached. The search always stops if the best route reaches the lower bound,
+     * because then it is optimal.
+     * @param elapsed The run time of the search so far in milliseconds.
+     * @param iterations The number of finished iterations.
+     * @param stagnation The number of iterations since the last new best route.
+     * @param bestDistance The distance of the best route.
+     * @param lowerBound The lower bound of the distance of every route, 0 if unknown.
+     * @return True if the search has to stop.
+     */
+    public boolean isReached(long elapsed, long iterations, int stagnation, int bestDistance, int lowerBound){
+        return (timeLimit > 0 && elapsed >= timeLimit)
+                || (maxIterations > 0 && iterations >= maxIterations)
+                || (maxStagnation > 0 && stagnation >= maxStagnation)
+                || (targetDistance > 0 && bestDistance <= targetDistance)
+                || (lowerBound > 0 && (bestDistance <= lowerBound
+                        || targetGap > 0 && bestDistance - lowerBound <= targetGap * lowerBound));
+    }
+}
@@ -1,15 +1,24 @@
 package de.metal_land.tsp;
 
-import de.metal_land.Util;
 import lombok.*;
 import lombok.extern.java.Log;
 
-import java.awt.geom.Line2D;
+import java.awt.GraphicsEnvironment;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Level;
 
 /**
  * @author nieh
@@ -17,48 +26,237 @@ import java.util.*;
 @Log
 @Data
 public class TSP {
+    /**
+     * Gets every new route, it is called on the thread of the search and may be set from any thread.
+     */
     @Getter(AccessLevel.NONE)
-    private Gui.DataChangedEventListener listener = null;
-    final private  LinkedList<Node> nodes = new LinkedList<>();
-    final private  Map<Node, TreeMap<Node, Integer>> distances = new HashMap<>();
+    private volatile Gui.DataChangedEventListener listener = null;
+    final private  List<Node> nodes = new ArrayList<>();
     private  String name = "";
 
+    /**
+     * The distance function of the problem, given by the EDGE_WEIGHT_TYPE of the file.
+     */
+    @Setter(AccessLevel.NONE)
+    private Metric metric = Metric.ATT;
+
+    /**
+     * The names and coordinates of the nodes, the nodes are views on them.
+     */
+    @Setter(AccessLevel.NONE)
+    private Coordinates coordinates = new Coordinates(Metric.ATT, new String[0], new double[0], new double[0]);
+
+    /**
+     * The distances given in the file, for explicit problems or problems read from a binary file.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private DistanceCache precomputedDistances = null;
+
+    /**
+     * The candidate lists read from a binary file.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private CandidateLists precomputedCandidates = null;
+
+    /**
+     * The type of the distance cache to use, if null the type is chosen by the number of nodes.
+     */
+    private DistanceCache.Type distanceCacheType = null;
+
+    @Setter(AccessLevel.NONE)
+    private DistanceCache distances;
+
+    /**
+     * The number of nearest nodes kept as candidates for every node.
+     */
+    private int candidateListSize = 10;
+
+    @Setter(AccessLevel.NONE)
+    private KdTree spatialIndex;
+
+    @Setter(AccessLevel.NONE)
+    private CandidateLists candidates;
+
+    /**
+     * True if the candidates are the nodes of the smallest alpha-nearness of the Held-Karp bound instead of the
+     * nearest nodes. Both take quadratic time in the number of nodes.
+     */
+    private boolean alphaCandidates = false;
+
+    /**
+     * The number of subgradient iterations of the Held-Karp bound, if 0 the number of nodes between 100 and 1000.
+     */
+    private int lowerBoundIterations = 0;
+
+    /**
+     * The Held-Karp lower bound of the distance of every route, 0 if it was not calculated.
+     */
+    @Setter(AccessLevel.NONE)
+    private volatile int lowerBound = 0;
+
+    /**
+     * The best route found so far, it may be read by any thread at any time.
+     */
     @Setter(AccessLevel.NONE)
-    private Route bestRoute;
+    private volatile Route bestRoute;
+
+    /**
+     * The route the next improvement starts from instead of the best route, set by {@link #restartFrom(Route)}.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Route startRoute = null;
 
     @NonNull
     private int tabuListMaxSize = 100;
 
+    /**
+     * True if the tenure of the tabu list adapts to repetitions of the search.
+     */
+    private boolean reactiveTabuList = false;
+
+    /**
+     * The number of tabu searches running side by side, 1 runs a single search, 0 one search per worker thread.
+     */
+    private int islands = 1;
+
+    /**
+     * The number of iterations after which an island offers its best route to the others and takes a better one.
+     */
+    private int migrationInterval = 200;
+
+    /**
+     * The number of best routes the islands share.
+     */
+    private int eliteSize = 8;
+
+    /**
+     * The number of tours in the population of the memetic search.
+     */
+    private int populationSize = 32;
+
+    /**
+     * The crossover of the memetic search.
+     */
+    private MemeticSearch.Crossover crossover = MemeticSearch.Crossover.EDGE_RECOMBINATION;
+
+    /**
+     * The heuristic used to construct the first route.
+     */
+    private Construction construction = Construction.NEAREST_NEIGHBOR;
+
+    /**
+     * The number of start nodes tried by the construction, if 0 the default of the heuristic, see
+     * {@link Construction#getDefaultStartNodes()}.
+     */
+    private int startNodes = 0;
+
+    /**
+     * The limits of the improvement searches.
+     */
     @NonNull
-    private int maxBadRoutes = 2000;
+    private StopCondition stopCondition = new StopCondition();
+
+    /**
+     * Set by {@link #cancel()} to stop the running search.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile boolean cancelled = false;
+
+    /**
+     * The end of the running solve by {@link System#nanoTime()}, fixed by {@link #fixDeadline()} so all stages
+     * share the time limit. 0 if there is none.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile long deadline = 0;
+
+    /**
+     * The problem this one is a part of, its cancellation and deadline stop this problem too, may be null.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private TSP parent = null;
+
+    /**
+     * The seed of the random numbers used by the searches, if null every run differs.
+     */
+    private Long seed = null;
+
+    /**
+     * The number of worker threads used by the parallel parts of the searches.
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private ForkJoinPool pool = null;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private SplittableRandom random = null;
+
+    /**
+     * The seed the random source was created from, it is saved by the checkpoints.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long randomSeed = 0;
+
+    /**
+     * The file the single tabu search saves its state to, see {@link #resume(Path)}, if null no checkpoints are
+     * written.
+     */
+    private Path checkpointFile = null;
+
+    /**
+     * The time between two checkpoints in milliseconds.
+     */
+    private long checkpointInterval = 60000;
+
+    /**
+     * The search used to improve the route after the construction.
+     */
+    private Improvement improvement = Improvement.TABU_SEARCH;
+
+    /**
+     * The stages run by {@link #solve()}, if null see {@link #getPipeline()}.
+     */
+    @Getter(AccessLevel.NONE)
+    private Stage pipeline = null;
+
+    /**
+     * The counters of the solver, may be polled from any thread.
+     */
+    @Setter(AccessLevel.NONE)
+    private final SolverMetrics metrics = new SolverMetrics();
 
     public static void main(String args[]){
         TSP problem = new TSP();
 
-        ClassLoader cl = TSP.class.getClassLoader();
-        InputStream is = cl.getResourceAsStream("att532.tsp");
-        if(is == null){
-            try {
-                is = new FileInputStream("att532.tsp");
-            } catch (FileNotFoundException e) {
-                e.printStackTrace();  //Template
-            }
+        File srcFile = new File("att532.tsp");
+        if(srcFile.isFile()){
+            problem.readCached(srcFile);
+        } else {
+            ClassLoader cl = TSP.class.getClassLoader();
+            problem.readFromFile(cl.getResourceAsStream("att532.tsp"));
         }
-        problem.readFromFile(is);
 
         // Start UI thread
-        Gui gui = new Gui(problem);
-        new Thread(gui).start();
+        if(!GraphicsEnvironment.isHeadless()){
+            new Thread(new Gui(problem)).start();
+        }
 
         problem.calculateDistances();
-        problem.greedy();
+        problem.solve();
 
-        TSP.log.info(String.format("Distance of Route: %d", problem.getBestRoute().getDistance()));
+        TSP.log.info(String.format("Distance of Route after %s: %d", problem.getPipeline(), problem.getBestRoute().getDistance()));
         TSP.log.info(problem.getBestRoute().getRoute().toString());
-
-        problem.tabuSearch();
-        TSP.log.info(String.format("Distance of Route after tabu Search: %d", problem.getBestRoute().getDistance()));
         problem.routeChanged(problem.getBestRoute());
+        TSP.log.info(problem.getMetrics().snapshot().toString());
     }
 
     /**
@@ -66,87 +264,347 @@ public class TSP {
      * @param srcFile The File to read.
      */
     public void readFromFile(InputStream srcFile){
-        Scanner scanner = new Scanner(srcFile);
-
-        boolean readCoordinates = false;
-        while (scanner.hasNextLine()){
-            String line = scanner.nextLine();
-            if(line.equals("NODE_COORD_SECTION")) {
-                readCoordinates = true;
-                continue;
-            } else if(line.equals("EOF")){
-                break;
+        long start = System.nanoTime();
+        TsplibReader reader = new TsplibReader(srcFile);
+        try {
+            reader.read();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        setNodes(reader.getName(), reader.getMetric(), reader.getNames(), reader.getXs(), reader.getYs());
+        precomputedDistances = (reader.getMatrix() != null)? new MatrixDistanceCache(nodes.size(), reader.getMatrix()) : null;
+        precomputedCandidates = null;
+        metrics.phaseFinished(SolverMetrics.Phase.PARSE, start);
+    }
+
+    /**
+     * Reads the problem from a file in the binary format, the distances and candidate lists of the file are used
+     * instead of calculating them.
+     * @param binaryFile The file to read.
+     */
+    public void readFromBinary(Path binaryFile){
+        long start = System.nanoTime();
+        BinaryInstance instance;
+        try {
+            instance = BinaryInstance.read(binaryFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        setNodes(instance.getName(), instance.getMetric(), instance.getNames(), instance.getXs(), instance.getYs());
+        precomputedDistances = instance.getDistances();
+        precomputedCandidates = instance.getCandidates();
+        metrics.phaseFinished(SolverMetrics.Phase.PARSE, start);
+    }
+
+    /**
+     * Writes the problem with its distances and candidate lists in the binary format, they are calculated first
+     * if needed.
+     * @param binaryFile The file to write.
+     * @param checksum The checksum of the TSPLIB file of the problem.
+     */
+    public void writeBinary(Path binaryFile, long checksum){
+        if(distances == null){
+            calculateDistances();
+        }
+
+        try {
+            BinaryInstance.write(binaryFile, checksum, this);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the best route as tour file in the TSPLIB format, the nodes are numbered from 1 in the order of the
+     * problem.
+     * @param tourFile The file to write.
+     */
+    public void writeTour(Path tourFile){
+        Route best = bestRoute;
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(tourFile, StandardCharsets.UTF_8))) {
+            out.println("NAME : " + tourFile.getFileName());
+            out.println("COMMENT : Length " + best.getDistance());
+            out.println("TYPE : TOUR");
+            out.println("DIMENSION : " + nodes.size());
+            out.println("TOUR_SECTION");
+            for (Node node : best.getRoute()) {
+                out.println(node.getIndex() + 1);
+            }
+            out.println(-1);
+            out.println("EOF");
+            if(out.checkError()){
+                throw new IOException("Writing " + tourFile + " failed");
             }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-            if(!readCoordinates){
-                String[] splitted = line.split(" : ");
-                if(splitted[0].equals("NAME")) {
-                    name = splitted[1];
-                }
-            } else {
-                String[] splitted = line.split(" ");
-                nodes.add(new Node(splitted[0], Integer.parseInt(splitted[1]), Integer.parseInt(splitted[2])));
+    /**
+     * Reads the problem from the binary file next to the TSPLIB file. If the binary file is missing or was made
+     * from another version of the TSPLIB file, it is written first.
+     * @param srcFile The TSPLIB file, the binary file has the same name with the suffix .bin.
+     */
+    public void readCached(File srcFile){
+        Path binaryFile = Paths.get(srcFile.getPath() + ".bin");
+        long checksum;
+        try {
+            checksum = BinaryInstance.checksum(srcFile.toPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if(BinaryInstance.readChecksum(binaryFile) != checksum){
+            try (InputStream in = new FileInputStream(srcFile)) {
+                readFromFile(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
+            writeBinary(binaryFile, checksum);
         }
 
+        readFromBinary(binaryFile);
+    }
+
+    /**
+     * Uses the given nodes as problem, for example a part of a larger problem.
+     * @param name The name of the problem.
+     * @param metric The distance function, it needs coordinates.
+     * @param names The names of the nodes.
+     * @param xs The x coordinates of the nodes.
+     * @param ys The y coordinates of the nodes.
+     */
+    public void readFromCoordinates(String name, Metric metric, String[] names, double[] xs, double[] ys){
+        setNodes(name, metric, names, xs, ys);
+        precomputedDistances = null;
+        precomputedCandidates = null;
+    }
+
+    /**
+     * Uses the given distances as explicit problem, the nodes are named by their number and have no coordinates.
+     * @param name The name of the problem.
+     * @param size The number of nodes.
+     * @param matrix The distances as flat n*n matrix, the array is not copied.
+     */
+    public void readFromMatrix(String name, int size, int[] matrix){
+        String[] names = new String[size];
+        for(int i=0; i<size; i++){
+            names[i] = String.valueOf(i + 1);
+        }
+        setNodes(name, Metric.EXPLICIT, names, new double[size], new double[size]);
+        precomputedDistances = new MatrixDistanceCache(size, matrix);
+        precomputedCandidates = null;
+    }
+
+    private void setNodes(String name, Metric metric, String[] names, double[] xs, double[] ys){
+        this.name = name;
+        this.metric = metric;
+        coordinates = new Coordinates(metric, names, xs, ys);
+        nodes.clear();
+        ((ArrayList<Node>) nodes).ensureCapacity(xs.length);
+        for(int i=0; i<xs.length; i++){
+            nodes.add(new Node(coordinates, i));
+        }
+        distances = null;
+        spatialIndex = null;
+        candidates = null;
+        lowerBound = 0;
+
         setTabuListMaxSize((int) (nodes.size()* 0.15));
     }
 
     /**
-     * Calculates the Distance from a Node to any other Node.
+     * Calculates the Distance from a Node to any other Node and the candidate lists of the nearest Nodes.
      */
-    private void calculateDistances(){
-        for (Node node : nodes) {
-            TreeMap<Node, Integer> nodeXDistance = new TreeMap<>();
+    public void calculateDistances(){
+        long start = System.nanoTime();
+        if(precomputedDistances != null){
+            distances = precomputedDistances;
+        } else {
+            DistanceCache.Type type = (distanceCacheType != null)? distanceCacheType : DistanceCache.Type.suitableFor(nodes.size());
+            distances = type.create(coordinates);
+        }
 
-            for (Node toNode : nodes) {
-                if(!toNode.equals(node)){
-                    nodeXDistance.put(toNode, node.distanceTo(toNode));
-                }
+        // the nearest nodes on the earth are not the nearest in the plane of latitude and longitude
+        spatialIndex = metric.isPlanar()? new KdTree(nodes) : null;
+        if(precomputedCandidates != null && precomputedCandidates.size() == Math.min(candidateListSize, nodes.size() - 1)){
+            candidates = precomputedCandidates;
+        } else if(spatialIndex != null){
+            candidates = new CandidateLists(spatialIndex, distances, candidateListSize);
+        } else {
+            candidates = new CandidateLists(distances, candidateListSize);
+        }
+        metrics.phaseFinished(SolverMetrics.Phase.DISTANCES, start);
+
+        lowerBound = 0;
+        if(alphaCandidates || stopCondition.getTargetGap() > 0){
+            calculateLowerBound();
+        }
+    }
+
+    /**
+     * Calculates the Held-Karp lower bound, and the candidate lists by the alpha-nearness if they are selected.
+     * The distances have to be calculated.
+     * @return The lower bound.
+     */
+    public int calculateLowerBound(){
+        long start = System.nanoTime();
+        HeldKarpBound heldKarp = new HeldKarpBound(distances);
+        int iterations = (lowerBoundIterations > 0)? lowerBoundIterations : Math.max(100, Math.min(1000, nodes.size()));
+        lowerBound = heldKarp.compute(iterations);
+        if(alphaCandidates){
+            candidates = heldKarp.alphaCandidates(candidateListSize);
+        }
+        metrics.phaseFinished(SolverMetrics.Phase.DISTANCES, start);
+        log.info(String.format("Lower bound: %d%s", lowerBound, heldKarp.isOptimal()? " (optimal)" : ""));
+
+        return lowerBound;
+    }
+
+    /**
+     * @return The relative gap between the best route and the lower bound, for example 0.01 for one percent,
+     * or NaN if one of them is unknown.
+     */
+    public double getGap(){
+        Route best = bestRoute;
+        return (lowerBound > 0 && best != null)? (double) (best.getDistance() - lowerBound) / lowerBound : Double.NaN;
+    }
+
+    /**
+     * @return A new set of all nodes, which finds the nearest remaining node with the spatial index if there is one.
+     */
+    public RemainingNodes remainingNodes(){
+        return (spatialIndex != null)? spatialIndex.remaining() : new RemainingNodes.Scan(distances);
+    }
+
+    /**
+     * Runs the pipeline of stages, see {@link #getPipeline()}. If a checkpoint file is set and holds a search of
+     * this problem, the first call resumes it and runs only the improvement, which continues the saved iteration
+     * and stagnation counters. The time limit starts again. A checkpoint of another problem is overwritten.
+     */
+    public void solve(){
+        cancelled = false;
+        boolean restored = false;
+        if(checkpointFile != null && bestRoute == null){
+            try {
+                restored = resume(checkpointFile);
+            } catch (IllegalArgumentException e) {
+                log.log(Level.WARNING, "Checkpoint " + checkpointFile + " is not resumed", e);
             }
+        }
+        if(stopCondition.getTargetGap() > 0 && lowerBound == 0){
+            calculateLowerBound();
+        }
+        ((restored)? improvement : getPipeline()).run(this);
+    }
 
-            TreeMap<Node, Integer> sortedNodeXDistance = new TreeMap<>(new ValueComparator(nodeXDistance));
-            sortedNodeXDistance.putAll(nodeXDistance);
-            distances.put(node, sortedNodeXDistance);
+    /**
+     * @return The stages run by {@link #solve()}. By default small problems are solved exactly, larger ones by the
+     * construction followed by the improvement and polished by exactly solved windows of the route.
+     */
+    public Stage getPipeline(){
+        if(pipeline != null){
+            return pipeline;
         }
 
+        ExactSolver exact = new ExactSolver();
+        return (nodes.size() <= exact.getMaxDpSize() + 1)? exact : new Pipeline(construction, improvement, exact);
     }
 
     /**
-     * Generates a route in a greedy way.
+     * Generates a route in a greedy way, starting from every node.
      */
     public void greedy(){
-        for(int i = 0; i < nodes.size(); i++){
-            List<Node> nodes = new LinkedList<>(getNodes());
-            List<Node> routeList = new ArrayList<>();
-            Node startNode = nodes.get(i);
+        construct(Construction.NEAREST_NEIGHBOR);
+    }
 
-            routeList.add(startNode);
-            nodes.remove(startNode);
+    /**
+     * Generates a route with the selected construction heuristic.
+     */
+    public void construct(){
+        construct(construction);
+    }
 
-            Node lastNode = routeList.get(0);
+    /**
+     * Generates a route with the given construction heuristic. If the heuristic depends on the start node it is
+     * run in parallel for a random sample of startNodes nodes, or its default number of nodes, and the best route
+     * is kept. Without the spatial index at most {@link Construction#SAMPLED_START_NODES} are tried by default. After the end of the solve no further start nodes are tried.
+     * @param construction The heuristic to use.
+     */
+    public void construct(Construction construction){
+        long start = System.nanoTime();
+        int count = (startNodes > 0)? startNodes : construction.getDefaultStartNodes();
+        if(count == 0 && spatialIndex == null){
+            // every nearest node is found by a scan of all nodes
+            count = Construction.SAMPLED_START_NODES;
+        }
+        int[] starts;
+        if(!construction.isMultiStart()){
+            starts = new int[]{0};
+        } else if(count <= 0 || count >= nodes.size()){
+            starts = new int[nodes.size()];
+            for(int i=0; i<starts.length; i++){
+                starts[i] = i;
+            }
+        } else {
+            starts = sampleNodes(count);
+        }
 
-            while(!nodes.isEmpty()){
-                TreeMap<Node,Integer> distanceMap = distances.get(lastNode);
-                Node shortestNode = null;
+        Route route = getPool().invoke(new ConstructionTask(construction, starts, 0, starts.length));
 
-                for (Node node : distanceMap.navigableKeySet()){
-                    if(!routeList.contains(node)) {
-                        shortestNode = node;
-                        break;
-                    }
-                }
+        if(bestRoute == null || route.compareTo(bestRoute) < 0){
+            setBestRoute(route);
+        }
+        metrics.phaseFinished(SolverMetrics.Phase.CONSTRUCTION, start);
+    }
 
-                nodes.remove(shortestNode);
-                routeList.add(shortestNode);
-                lastNode = shortestNode;
-            }
+    /**
+     * Draws distinct random nodes.
+     * @param count The number of nodes to draw.
+     * @return The indices of the nodes.
+     */
+    private int[] sampleNodes(int count){
+        SplittableRandom random = getRandom().split();
+        int[] indices = new int[nodes.size()];
+        for(int i=0; i<indices.length; i++){
+            indices[i] = i;
+        }
+        for(int i=0; i<count; i++){
+            int j = i + random.nextInt(indices.length - i);
+            int swap = indices[i];
+            indices[i] = indices[j];
+            indices[j] = swap;
+        }
+
+        return Arrays.copyOf(indices, count);
+    }
 
-            Route route = new Route(routeList);
+    /**
+     * Constructs the routes for a range of start nodes and keeps the shortest one.
+     */
+    @AllArgsConstructor
+    private class ConstructionTask extends RecursiveTask<Route> {
+        private final Construction construction;
+        private final int[] starts;
+        private final int from;
+        private final int to;
 
-            if(bestRoute == null || route.compareTo(bestRoute) < 0){
-                setBestRoute(route);
+        @Override
+        protected Route compute() {
+            if(to - from == 1){
+                // the first start is always built, so there is a route
+                return (from > 0 && isPastDeadline())? null : construction.build(TSP.this, starts[from]);
             }
+
+            int middle = (from + to) >>> 1;
+            ConstructionTask left = new ConstructionTask(construction, starts, from, middle);
+            left.fork();
+            Route right = new ConstructionTask(construction, starts, middle, to).compute();
+            Route best = left.join();
+
+            return (best == null || right != null && right.compareTo(best) < 0)? right : best;
         }
     }
 
@@ -154,37 +612,634 @@ public class TSP {
     @Setter(AccessLevel.NONE)
     private int badRoutes = 0;
 
+    /**
+     * The single tabu search, it is continued by the next call of {@link #tabuSearch()}.
+     */
     @Getter(AccessLevel.NONE)
     @Setter(AccessLevel.NONE)
-    private Route currentRoute = null;
+    private TabuSearch trajectory = null;
 
+    /**
+     * Set by {@link #resume(Path)}, the next tabu search continues the counters of the resumed search.
+     */
     @Getter(AccessLevel.NONE)
     @Setter(AccessLevel.NONE)
-    private Deque<Node[]> tabuList = new LinkedList<>();
+    private boolean resumed = false;
 
     /**
      * Search in the Neighborhood for better routes, using a tabu list for already taken routes.
+     * The search runs until the stop condition is reached or it is cancelled. With more than one island the
+     * searches run in parallel, see {@link #islandSearch(int)}.
      */
     public void tabuSearch(){
-        if(currentRoute == null) { currentRoute = bestRoute; }
+        int count = (islands > 0)? islands : parallelism;
+        if(count > 1){
+            islandSearch(count);
+            return;
+        }
 
-        currentRoute = optimize(currentRoute.getBestNeighbor(tabuList));
+        Route restart = startRoute;
+        startRoute = null;
+        if(trajectory == null) {
+            TabuList tabuList = new TabuList(tabuListMaxSize);
+            tabuList.setReactive(reactiveTabuList);
+            trajectory = new TabuSearch((restart != null)? restart : bestRoute, candidates, tabuList, getPool(),
+                    getRandom(), metrics);
+        } else if(restart != null){
+            trajectory.restart(restart);
+        }
 
-        if(tabuList.size() > tabuListMaxSize){
-            tabuList.removeLast();
+        long start = System.nanoTime();
+        long iterations = 0;
+        badRoutes = 0;
+        if(resumed){
+            // the resumed search does not get its iterations again
+            iterations = trajectory.getIterations();
+            badRoutes = trajectory.getStagnation();
+            resumed = false;
         }
+        metrics.searchStarted();
 
-        if(bestRoute.compareTo(currentRoute) > 0){
-            setBestRoute(currentRoute);
-            badRoutes = 0;
-        } else {
-            routeChanged(currentRoute);
-            badRoutes++;
+        Checkpoint.Writer checkpoints = (checkpointFile != null)? new Checkpoint.Writer(checkpointFile) : null;
+        long lastCheckpoint = start;
+        while(!isStopped(start, iterations, badRoutes)) {
+            trajectory.step(bestRoute.getDistance());
+            Route currentRoute = trajectory.getCurrent();
+
+            if(bestRoute.compareTo(currentRoute) > 0){
+                setBestRoute(currentRoute);
+                badRoutes = 0;
+            } else {
+                routeChanged(currentRoute);
+                badRoutes++;
+            }
+            iterations++;
+            metrics.iterationFinished();
+
+            if(checkpoints != null && System.nanoTime() - lastCheckpoint >= checkpointInterval * 1000000){
+                checkpoints.write(Checkpoint.encode(this, randomSeed, bestRoute, trajectory));
+                lastCheckpoint = System.nanoTime();
+            }
+        }
+
+        if(checkpoints != null){
+            // a search stopped by the time or cancelled is saved to be resumed, a finished search is removed
+            long timeLimit = stopCondition.getTimeLimit();
+            boolean finished = !isCancelled() && !Thread.currentThread().isInterrupted() && !isPastDeadline()
+                    && (timeLimit <= 0 || (System.nanoTime() - start) / 1000000 < timeLimit);
+            if(!finished){
+                checkpoints.write(Checkpoint.encode(this, randomSeed, bestRoute, trajectory));
+            }
+            checkpoints.close();
+            if(finished){
+                try {
+                    Files.deleteIfExists(checkpointFile);
+                } catch (IOException e) {
+                    log.log(Level.WARNING, "Checkpoint could not be removed", e);
+                }
+            }
+        }
+        metrics.phaseFinished(SolverMetrics.Phase.IMPROVEMENT, start);
+    }
+
+    /**
+     * Continues the single tabu search saved in a checkpoint of an earlier run on the same problem: the best and
+     * the current route, the tabu list and the iteration counters are restored. The random numbers of the resumed
+     * search are derived from the saved seed and iterations, so they differ from those of the interrupted run.
+     * The distances have to be calculated.
+     * @param file The checkpoint file.
+     * @return True if the search was restored, false if the file does not exist.
+     * @throws IllegalArgumentException If the file is no checkpoint or one of a problem with another name or
+     * number of nodes.
+     */
+    public boolean resume(Path file){
+        Checkpoint checkpoint;
+        try {
+            checkpoint = Checkpoint.read(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if(checkpoint == null){
+            return false;
+        }
+        if(!checkpoint.getName().equals(name) || checkpoint.getBest().length != nodes.size()){
+            throw new IllegalArgumentException(String.format("Checkpoint of another problem: %s with %d nodes",
+                    checkpoint.getName(), checkpoint.getBest().length));
+        }
+
+        synchronized (this) {
+            randomSeed = checkpoint.getSeed() + checkpoint.getIterations() * 0x9E3779B97F4A7C15L;
+            random = new SplittableRandom(randomSeed);
+        }
+        Route best = toRoute(checkpoint.getBest());
+        Route current = toRoute(checkpoint.getCurrent());
+        offerBestRoute(best);
+
+        trajectory = new TabuSearch(best, candidates, checkpoint.getTabuList(), getPool(), getRandom(), metrics);
+        trajectory.resume(current, checkpoint.getIterations(), checkpoint.getStagnation());
+        resumed = true;
+        startRoute = null;
+        log.info(String.format("Resumed %s after %d iterations at %d", name, checkpoint.getIterations(), best.getDistance()));
+
+        return true;
+    }
+
+    private Route toRoute(int[] indices){
+        List<Node> routeList = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            routeList.add(nodes.get(index));
+        }
+
+        return new Route(routeList, distances);
+    }
+
+    /**
+     * Runs independent tabu searches on the pool, every island with its own random stream and tenure. Every
+     * migrationInterval iterations an island offers its best route to the shared elite pool and continues from
+     * a random elite route if that is better than its own best. An island stops if the stop condition is reached
+     * for its own iterations, or for the run time and the best route of all islands.
+     * The result depends on the scheduling, so it is not reproducible even with a seed.
+     * @param count The number of islands.
+     */
+    private void islandSearch(int count){
+        long start = System.nanoTime();
+        metrics.searchStarted();
+        ElitePool elites = new ElitePool(eliteSize);
+        elites.offer(bestRoute);
+        Route first = takeStartRoute();
+
+        SplittableRandom random = getRandom();
+        final List<Island> tasks = new ArrayList<>(count);
+        for(int i=0; i<count; i++){
+            // spread the tenures from half to twice the configured size
+            double factor = Math.pow(2, 2.0 * i / (count - 1) - 1);
+            TabuList tabuList = new TabuList((int) Math.round(tabuListMaxSize * factor));
+            tabuList.setReactive(reactiveTabuList);
+
+            TabuSearch search = new TabuSearch(first, candidates, tabuList, getPool(), random.split(), metrics);
+            tasks.add(new Island(search, elites, random.split(), start));
+        }
+
+        getPool().invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        metrics.phaseFinished(SolverMetrics.Phase.IMPROVEMENT, start);
+    }
+
+    /**
+     * One tabu search of the island model.
+     */
+    @AllArgsConstructor
+    private class Island extends RecursiveAction {
+        private final TabuSearch search;
+        private final ElitePool elites;
+        private final SplittableRandom random;
+        private final long start;
+
+        @Override
+        protected void compute() {
+            while(!isStopped(start, search.getIterations(), search.getStagnation())){
+                if(search.step(bestRoute.getDistance())){
+                    offerBestRoute(search.getBest());
+                }
+                metrics.iterationFinished();
+
+                if(migrationInterval > 0 && search.getIterations() % migrationInterval == 0){
+                    elites.offer(search.getBest());
+                    Route elite = elites.sample(random);
+                    if(elite != null && elite.compareTo(search.getBest()) < 0){
+                        search.restart(elite);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return A copy of the coordinates of the nodes, it is not changed by {@link #addNode(String, double, double)},
+     * {@link #removeNode(Node)} or {@link #moveNode(Node, double, double)}.
+     */
+    public synchronized Coordinates snapshotCoordinates(){
+        return coordinates.copy();
+    }
+
+    /**
+     * Adds a node to the solved problem. The node is inserted into the best route at the cheapest position and the
+     * route is repaired by Lin-Kernighan around it, the distances and candidate lists are updated instead of being
+     * calculated again. Must not be called while a search runs, the next tabu search starts with a new tabu list.
+     * @param name The name of the node.
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @return The new node, it has the last index.
+     */
+    public synchronized Node addNode(String name, double x, double y){
+        prepareUpdate(true);
+        Node node = new Node(coordinates, coordinates.add(name, x, y));
+        nodes.add(node);
+        if(distances instanceof DynamicDistanceCache){
+            ((DynamicDistanceCache) distances).add(distancesFrom(node));
+        }
+        candidates = candidates.update(distances, candidateListSize, node.getIndex());
+
+        List<Node> routeList = new ArrayList<>(bestRoute.getRoute());
+        insertCheapest(routeList, node);
+        repair(routeList, node.getIndex());
+
+        return node;
+    }
+
+    /**
+     * Removes a node from the solved problem, its neighbors in the best route are joined and the route is repaired
+     * around the gap. The last node takes the index of the removed one, as new {@link Node}: the old Node of the last
+     * node is no longer a node of the problem and has to be replaced by the returned one. Must not be called while
+     * a search runs.
+     * @param node The node to remove.
+     * @return The node which took the index of the removed one, null if the removed node was the last one.
+     */
+    public synchronized Node removeNode(Node node){
+        prepareUpdate(false);
+        int index = node.getIndex();
+        if(index >= nodes.size() || nodes.get(index) != node){
+            throw new IllegalArgumentException("Not a node of the problem: " + node.getName());
+        }
+        if(nodes.size() <= 3){
+            throw new IllegalArgumentException("A route needs at least 3 nodes");
+        }
+
+        int last = nodes.size() - 1;
+        Node moved = null;
+        coordinates.remove(index);
+        if(index != last){
+            moved = new Node(coordinates, index);
+            nodes.set(index, moved);
+        }
+        nodes.remove(last);
+        if(distances instanceof DynamicDistanceCache){
+            ((DynamicDistanceCache) distances).remove(index);
+        }
+        candidates = candidates.remove(distances, candidateListSize, index);
+
+        List<Node> routeList = new ArrayList<>(nodes.size());
+        int gap = 0;
+        for (Node routeNode : bestRoute.getRoute()) {
+            if(routeNode == node){
+                gap = routeList.size();
+            } else {
+                routeList.add((routeNode.getIndex() == last)? moved : routeNode);
+            }
+        }
+        repair(routeList, routeList.get((gap == 0)? routeList.size() - 1 : gap - 1).getIndex(),
+                routeList.get(gap % routeList.size()).getIndex());
+
+        return moved;
+    }
+
+    /**
+     * Moves a node of the solved problem to new coordinates, it is inserted again at the cheapest position of the
+     * best route and the route is repaired around the old and the new position. Must not be called while a search
+     * runs.
+     * @param node The node to move.
+     * @param x The new x coordinate.
+     * @param y The new y coordinate.
+     */
+    public synchronized void moveNode(Node node, double x, double y){
+        prepareUpdate(true);
+        int index = node.getIndex();
+        if(index >= nodes.size() || nodes.get(index) != node){
+            throw new IllegalArgumentException("Not a node of the problem: " + node.getName());
+        }
+
+        coordinates.set(index, x, y);
+        if(distances instanceof DynamicDistanceCache){
+            ((DynamicDistanceCache) distances).set(index, distancesFrom(node));
+        }
+        candidates = candidates.update(distances, candidateListSize, index);
+
+        List<Node> routeList = new ArrayList<>(bestRoute.getRoute());
+        int position = routeList.indexOf(node);
+        Node before = routeList.get((position == 0)? routeList.size() - 1 : position - 1);
+        Node after = routeList.get((position + 1) % routeList.size());
+        routeList.remove(position);
+        insertCheapest(routeList, node);
+        repair(routeList, index, before.getIndex(), after.getIndex());
+    }
+
+    /**
+     * Checks that the problem is solved and forgets everything that depends on the old nodes. Small problems
+     * get distances that can be changed, large ones calculate their distances on demand.
+     * @param needsCoordinates True if the change needs coordinates.
+     */
+    private void prepareUpdate(boolean needsCoordinates){
+        if(distances == null || bestRoute == null){
+            throw new IllegalArgumentException("The problem has to be solved before it is changed");
+        }
+        if(needsCoordinates && !metric.hasCoordinates()){
+            throw new IllegalArgumentException("Nodes can not be placed with the metric " + metric);
+        }
+
+        if(!(distances instanceof DynamicDistanceCache) && !(distances instanceof LazyDistanceCache)){
+            distances = (metric.hasCoordinates() && DistanceCache.Type.suitableFor(nodes.size()) == DistanceCache.Type.LAZY)?
+                    new LazyDistanceCache(coordinates) : new DynamicDistanceCache(distances);
+        }
+        precomputedDistances = null;
+        precomputedCandidates = null;
+        spatialIndex = null;
+        lowerBound = 0;
+        trajectory = null;
+        startRoute = null;
+    }
+
+    private int[] distancesFrom(Node node){
+        int[] row = new int[nodes.size()];
+        coordinates.row(node.getIndex(), 0, row.length, row, 0);
+        row[node.getIndex()] = 0;
+
+        return row;
+    }
+
+    /**
+     * Inserts the node between the two neighbors of the route that lengthen it the least.
+     */
+    private void insertCheapest(List<Node> routeList, Node node){
+        int index = node.getIndex();
+        int best = 0;
+        long bestIncrease = Long.MAX_VALUE;
+        for(int i=0; i<routeList.size(); i++){
+            int from = routeList.get(i).getIndex();
+            int to = routeList.get((i + 1) % routeList.size()).getIndex();
+            long increase = (long) distances.distance(from, index) + distances.distance(index, to) - distances.distance(from, to);
+            if(increase < bestIncrease){
+                bestIncrease = increase;
+                best = i + 1;
+            }
+        }
+
+        routeList.add(best, node);
+    }
+
+    /**
+     * Improves the changed route by Lin-Kernighan moves starting at the given nodes and their neighbors, and sets it
+     * as best route even if it is longer than the old one.
+     * @param routeList The changed route.
+     * @param touched The indices of the nodes next to the change.
+     */
+    private void repair(List<Node> routeList, int... touched){
+        Route route = new Route(routeList, distances);
+        if(routeList.size() > 4){
+            Tour tour = new Tour(route);
+            int[] start = new int[3 * touched.length];
+            for(int i=0; i<touched.length; i++){
+                start[3 * i] = touched[i];
+                start[3 * i + 1] = tour.prev(touched[i]);
+                start[3 * i + 2] = tour.next(touched[i]);
+            }
+            LinKernighan linKernighan = new LinKernighan(candidates);
+            linKernighan.setMetrics(metrics);
+            if(linKernighan.optimize(tour, start) < 0){
+                route = tour.toRoute();
+            }
+        }
+
+        bestRoute = route;
+        routeChanged(route);
+    }
+
+    /**
+     * Sets the route as best route if it is shorter than the current best route, may be called from any thread.
+     * @param route The new route.
+     */
+    public synchronized void offerBestRoute(Route route){
+        if(bestRoute == null || route.compareTo(bestRoute) < 0){
+            setBestRoute(route);
         }
+    }
+
+    /**
+     * Sets the route the next improvement starts from instead of the best route, used by perturbations.
+     * @param route The route to start from.
+     */
+    public void restartFrom(Route route){
+        startRoute = route;
+        routeChanged(route);
+    }
+
+    /**
+     * Returns the route the next improvement starts from and forgets it, so later improvements start from the
+     * best route again.
+     * @return The route set by {@link #restartFrom(Route)} or else the best route.
+     */
+    public Route takeStartRoute(){
+        Route route = (startRoute != null)? startRoute : bestRoute;
+        startRoute = null;
+        return route;
+    }
+
+    /**
+     * Improves the best route with the selected improvement search.
+     */
+    public void improve(){
+        cancelled = false;
+        improve(improvement);
+    }
+
+    /**
+     * Improves the route with the given search, the cancel request is kept.
+     * @param improvement The search to run.
+     */
+    public void improve(Improvement improvement){
+        switch (improvement){
+            case LIN_KERNIGHAN:
+                linKernighan();
+                break;
+            case MEMETIC:
+                memeticSearch();
+                break;
+            case SIMULATED_ANNEALING:
+                simulatedAnnealing();
+                break;
+            default:
+                tabuSearch();
+        }
+    }
+
+    /**
+     * Improves the best route with an iterated Lin-Kernighan search. Every local optimum is kicked and optimized
+     * again, until the stop condition is reached or the search is cancelled. Every kick counts as iteration.
+     */
+    public void linKernighan(){
+        long start = System.nanoTime();
+        LinKernighan linKernighan = new LinKernighan(candidates);
+        linKernighan.setMetrics(metrics);
+        SplittableRandom random = getRandom().split();
+        metrics.searchStarted();
+
+        Tour tour = new Tour(takeStartRoute());
+        linKernighan.optimize(tour);
+        Tour best = new Tour(tour);
+        if(tour.getDistance() < bestRoute.getDistance()){
+            setBestRoute(tour.toRoute());
+        }
+
+        long iterations = 0;
+        int kicks = 0;
+        while(!isStopped(start, iterations, kicks)){
+            linKernighan.optimize(tour, linKernighan.kick(tour, random));
+
+            if(tour.getDistance() < best.getDistance()){
+                best.copyFrom(tour);
+                setBestRoute(tour.toRoute());
+                kicks = 0;
+            } else {
+                if(tour.getDistance() > best.getDistance()){
+                    tour.copyFrom(best);
+                }
+                kicks++;
+            }
+            iterations++;
+            metrics.iterationFinished();
+        }
+        metrics.phaseFinished(SolverMetrics.Phase.IMPROVEMENT, start);
+    }
+
+    /**
+     * Improves the best route with a memetic search, whose offspring are optimized with 2-opt and or-opt moves.
+     * The search runs until the stop condition is reached or it is cancelled, every generation counts as iteration.
+     */
+    public void memeticSearch(){
+        long start = System.nanoTime();
+        metrics.searchStarted();
+        SplittableRandom random = getRandom().split();
+
+        MemeticSearch memetic = new MemeticSearch(candidates);
+        memetic.setPopulationSize(populationSize);
+        memetic.setOffspringSize(populationSize);
+        memetic.setCrossover(crossover);
+        memetic.setMetrics(metrics);
+        memetic.initialize(new Tour(takeStartRoute()), getPool(), random);
 
-        if(badRoutes < maxBadRoutes) {
-            tabuSearch();
+        long iterations = 0;
+        int stagnation = 0;
+        Tour best = memetic.best();
+        while(true){
+            if(best.getDistance() < bestRoute.getDistance()){
+                setBestRoute(best.toRoute());
+                stagnation = 0;
+            } else if(iterations > 0){
+                stagnation++;
+            }
+
+            if(isStopped(start, iterations, stagnation)){
+                break;
+            }
+            best = memetic.nextGeneration(getPool(), random);
+            iterations++;
+            metrics.iterationFinished();
         }
+        metrics.phaseFinished(SolverMetrics.Phase.IMPROVEMENT, start);
+    }
+
+    /**
+     * Improves the best route by simulated annealing with the default cooling schedule, see
+     * {@link SimulatedAnnealing} for other schedules.
+     */
+    public void simulatedAnnealing(){
+        new SimulatedAnnealing().run(this);
+    }
+
+    /**
+     * Checks if the running search has to stop.
+     * @param start The start of the search by {@link System#nanoTime()}.
+     * @param iterations The number of finished iterations.
+     * @param stagnation The number of iterations since the last new best route.
+     * @return True if the stop condition is reached, the search was cancelled or the thread was interrupted.
+     */
+    public boolean isStopped(long start, long iterations, int stagnation){
+        return isCancelled() || Thread.currentThread().isInterrupted() || isPastDeadline()
+                || stopCondition.isReached((System.nanoTime() - start) / 1000000, iterations, stagnation,
+                        bestRoute.getDistance(), lowerBound);
+    }
+
+    /**
+     * Fixes the end of the solve from the time limit of the stop condition, unless it is fixed already.
+     * @return True if this call fixed it, then it has to be cleared by {@link #clearDeadline()}.
+     */
+    boolean fixDeadline(){
+        if(deadline != 0 || stopCondition.getTimeLimit() <= 0){
+            return false;
+        }
+
+        // 0 means no deadline
+        long end = System.nanoTime() + stopCondition.getTimeLimit() * 1000000;
+        deadline = (end != 0)? end : 1;
+        return true;
+    }
+
+    /**
+     * Removes the end of the solve, the next solve fixes a new one.
+     */
+    void clearDeadline(){
+        deadline = 0;
+    }
+
+    /**
+     * @return True if the time limit of the whole solve, or of the solve this problem is a part of, is over, see
+     * {@link Pipeline}.
+     */
+    public boolean isPastDeadline(){
+        return remainingTime() <= 0;
+    }
+
+    /**
+     * @return The milliseconds until the end of the solve or of the solve this problem is a part of,
+     * {@link Long#MAX_VALUE} if there is no deadline.
+     */
+    long remainingTime(){
+        long end = deadline;
+        long remaining = (end != 0)? (end - System.nanoTime()) / 1000000 : Long.MAX_VALUE;
+        return (parent != null)? Math.min(remaining, parent.remainingTime()) : remaining;
+    }
+
+    /**
+     * Makes this problem a part of another one, it is stopped if the other one is cancelled or its deadline is
+     * reached.
+     * @param whole The problem this one is a part of.
+     */
+    void partOf(TSP whole){
+        parent = whole;
+    }
+
+    /**
+     * Asks the running search to stop, it returns after the current iteration and keeps the best route.
+     * May be called from any thread, the request is cleared by the next call of {@link #improve()} or
+     * {@link #solve()}.
+     */
+    public void cancel(){
+        cancelled = true;
+    }
+
+    /**
+     * @return True if the running search, or the search this problem is a part of, was asked to stop.
+     */
+    public boolean isCancelled(){
+        return cancelled || parent != null && parent.isCancelled();
+    }
+
+    /**
+     * @return The maximal number of iterations in a row without a new best route.
+     */
+    public int getMaxBadRoutes(){
+        return stopCondition.getMaxStagnation();
+    }
+
+    /**
+     * Sets the maximal number of iterations in a row without a new best route.
+     * @param maxBadRoutes The new maximum, 0 for no limit.
+     */
+    public void setMaxBadRoutes(int maxBadRoutes){
+        stopCondition.setMaxStagnation(maxBadRoutes);
     }
 
     /**
@@ -193,6 +1248,7 @@ public class TSP {
      */
     private void setBestRoute(Route newRoute){
         bestRoute = newRoute;
+        metrics.improved(newRoute.getDistance());
         routeChanged(newRoute);
     }
 
@@ -207,57 +1263,61 @@ public class TSP {
     }
 
     /**
-     * Optimize the route by removing loops.
+     * Optimize the route with 2-opt and or-opt moves until no improving move is left.
      * @param route The route to optimize.
      * @return The optimized route.
      */
-    private Route optimize(Route route){
-        List<Node> routeList = route.getRoute();
-        List<Node> modifiedList = new ArrayList<>(routeList.size());
-        int distance = 30;
+    Route optimize(Route route){
+        Tour tour = new Tour(route);
+        TwoOptSearch search = new TwoOptSearch(candidates);
+        search.setMetrics(metrics);
+        if(search.optimize(tour) < 0) {
+            Route newRoute = tour.toRoute();
+            log.info(String.format("Old Route: %d  New Route: %d", route.getDistance(), newRoute.getDistance()));
+            return newRoute;
+        } else {
+            return route;
+        }
+    }
 
-        // checks all nodes or until a loop is resolved
-        for (Node currentNode : routeList) {
-            int currentIndex = routeList.indexOf(currentNode);
+    /**
+     * @return The pool for the parallel parts of the searches, created with the configured parallelism.
+     */
+    public synchronized ForkJoinPool getPool(){
+        if(pool == null){
+            pool = new ForkJoinPool(parallelism);
+        }
 
-            // don't move over the end of the array
-            if(currentIndex >= routeList.size()-distance) {
-                distance--;
-                if(distance <= 4) { break; }
-            }
+        return pool;
+    }
 
-            int index = currentIndex + 2;
-            for(int i=0;i<distance;i++){
-                Node node = routeList.get(index);
-                Node nodeNext = routeList.get(index+1);
-
-                if(Line2D.linesIntersect(nodeNext.getX(), nodeNext.getY(),
-                        node.getX(), node.getY(),
-                        currentNode.getX(), currentNode.getY(),
-                        routeList.get(currentIndex+1).getX(), routeList.get(currentIndex+1).getY())){
-                    List<Node> part1 = Util.sublist(routeList, 0, currentIndex+1);
-                    //reverse the looped part
-                    List<Node> reversePart = Util.reverseList(Util.sublist(routeList, currentIndex+1, index+1));
-                    List<Node> part2 = Util.sublist(routeList, index+1, routeList.size());
-
-                    //assemble the new list
-                    modifiedList.addAll(part1);
-                    modifiedList.addAll(reversePart);
-                    modifiedList.addAll(part2);
-                    break;
-                }
-            }
+    /**
+     * Lets the parallel parts of the searches run on the pool of another problem, so sub-problems solved on that
+     * pool do not start threads of their own.
+     * @param other The problem whose pool is used.
+     */
+    void sharePool(TSP other){
+        sharePool(other.getPool());
+    }
 
-            if(modifiedList.size()>0) { break; }
-        }
+    /**
+     * Lets the parallel parts of the searches run on the given pool, which is not shut down by this problem.
+     * @param shared The pool to use.
+     */
+    synchronized void sharePool(ForkJoinPool shared){
+        pool = shared;
+    }
 
-        if(modifiedList.size()>0) {
-            Route newRoute = new Route(modifiedList);
-            log.info(String.format("Old Route: %d  New Route: %d", route.getDistance(), newRoute.getDistance()));
-            return optimize(newRoute);
-        } else {
-            return route;
+    /**
+     * @return The random source of the searches, created from the seed if one is set.
+     */
+    public synchronized SplittableRandom getRandom(){
+        if(random == null){
+            randomSeed = (seed != null)? seed : new SplittableRandom().nextLong();
+            random = new SplittableRandom(randomSeed);
         }
+
+        return random;
     }
 
     /**
@@ -269,18 +1329,14 @@ public class TSP {
     }
 
     /**
-     * A comparator to sort a map by the Value.
+     * The available searches to improve a route.
      */
-    @AllArgsConstructor
-    private class ValueComparator implements Comparator<Node> {
-        private Map<Node, Integer> base;
+    public enum Improvement implements Stage {
+        TABU_SEARCH, LIN_KERNIGHAN, MEMETIC, SIMULATED_ANNEALING;
 
-        public int compare(Node a, Node b) {
-            if (base.get(a) > base.get(b)) {
-                return 1;
-            } else {
-                return -1;
-            }
+        @Override
+        public void run(TSP problem) {
+            problem.improve(this);
         }
     }
 }
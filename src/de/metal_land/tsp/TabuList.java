@@ -0,0 +1,309 @@
+package de.metal_land.tsp;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The memory of the tabu search. Every forbidden pair of nodes is stored in a hash table together with the
+ * iteration in which it expires, so a check needs constant time and no allocation.
+ * Optionally the tenure reacts to the search: it grows if the search returns to already seen route lengths and
+ * shrinks again while no repetitions occur.
+ * @author nieh
+ */
+public class TabuList {
+    private final Table entries = new Table(64);
+    private final Table seenDistances = new Table(64);
+
+    /**
+     * The number of the current iteration.
+     */
+    @Getter
+    @Setter
+    private int iteration = 0;
+
+    /**
+     * The number of iterations a pair stays forbidden.
+     */
+    @Getter
+    private int tenure;
+
+    /**
+     * True if the tenure adapts to repetitions of the search.
+     */
+    @Getter
+    @Setter
+    private boolean reactive = false;
+
+    /**
+     * The bounds of the tenure if it is reactive.
+     */
+    @Getter
+    @Setter
+    private int minTenure;
+    @Getter
+    @Setter
+    private int maxTenure;
+
+    /**
+     * The iteration of the last change of the tenure.
+     */
+    private int lastReaction = 0;
+
+    /**
+     * Counts the tabu hits and aspirations, may be null.
+     */
+    @Getter
+    @Setter
+    private SolverMetrics metrics = null;
+
+    public TabuList(int tenure){
+        setTenure(tenure);
+        minTenure = Math.max(1, tenure / 2);
+        maxTenure = tenure * 4;
+    }
+
+    /**
+     * Sets the number of iterations a pair stays forbidden, already forbidden pairs keep their expiry.
+     * @param tenure The new tenure, at least 1.
+     */
+    public void setTenure(int tenure){
+        this.tenure = Math.max(1, tenure);
+    }
+
+    /**
+     * Checks if swapping the two nodes is forbidden.
+     * @param a The index of the first node.
+     * @param b The index of the second node.
+     * @return True if the pair is tabu.
+     */
+    public boolean isTabu(int a, int b){
+        return entries.get(key(a, b)) > iteration;
+    }
+
+    /**
+     * Checks if a move is allowed, a tabu move is allowed if it leads to a new best route.
+     * @param a The index of the first node.
+     * @param b The index of the second node.
+     * @param newDistance The distance of the route after the move.
+     * @param bestDistance The distance of the best route found so far.
+     * @return True if the move may be taken.
+     */
+    public boolean isAllowed(int a, int b, int newDistance, int bestDistance){
+        if(!isTabu(a, b)){
+            return true;
+        } else if(newDistance < bestDistance){
+            if(metrics != null){
+                metrics.aspiration();
+            }
+            return true;
+        }
+
+        if(metrics != null){
+            metrics.tabuHit();
+        }
+        return false;
+    }
+
+    /**
+     * Forbids the pair for the next tenure iterations.
+     * @param a The index of the first node.
+     * @param b The index of the second node.
+     */
+    public void add(int a, int b){
+        entries.put(key(a, b), iteration + tenure + 1, iteration + 1);
+    }
+
+    /**
+     * Starts the next iteration, the route length reached in the finished iteration is used for the reactive tenure.
+     * @param distance The distance of the current route.
+     */
+    public void nextIteration(int distance){
+        iteration++;
+        if(!reactive){
+            return;
+        }
+
+        long key = distance + 1L;
+        int lastSeen = seenDistances.get(key);
+        int window = 2 * maxTenure;
+        seenDistances.put(key, iteration, iteration - window);
+
+        if(lastSeen > 0 && iteration - lastSeen < window){
+            // the search cycles, forbid more
+            setTenure(Math.min(maxTenure, (int) Math.ceil(tenure * 1.1)));
+            lastReaction = iteration;
+        } else if(iteration - lastReaction > window){
+            setTenure(Math.max(minTenure, (int) (tenure * 0.9)));
+            lastReaction = iteration;
+        }
+    }
+
+    /**
+     * Removes all entries and resets the iteration counter.
+     */
+    public void clear(){
+        entries.clear();
+        seenDistances.clear();
+        iteration = 0;
+        lastReaction = 0;
+    }
+
+    /**
+     * Writes the state of the list, only pairs that are still forbidden are written.
+     * @param out The output to write to.
+     * @throws IOException If the output fails.
+     */
+    public void save(DataOutput out) throws IOException {
+        out.writeInt(iteration);
+        out.writeInt(tenure);
+        out.writeBoolean(reactive);
+        out.writeInt(minTenure);
+        out.writeInt(maxTenure);
+        out.writeInt(lastReaction);
+        entries.save(out, iteration + 1);
+        seenDistances.save(out, iteration - 2 * maxTenure);
+    }
+
+    /**
+     * Reads a list written by {@link #save(DataOutput)}.
+     * @param in The input to read from.
+     * @return The list.
+     * @throws IOException If the input fails.
+     */
+    public static TabuList restore(DataInput in) throws IOException {
+        int iteration = in.readInt();
+        TabuList tabuList = new TabuList(in.readInt());
+        tabuList.iteration = iteration;
+        tabuList.reactive = in.readBoolean();
+        tabuList.minTenure = in.readInt();
+        tabuList.maxTenure = in.readInt();
+        tabuList.lastReaction = in.readInt();
+        tabuList.entries.load(in);
+        tabuList.seenDistances.load(in);
+
+        return tabuList;
+    }
+
+    private static long key(int a, int b){
+        return (a < b)? (((long) a << 32) | b) + 1 : (((long) b << 32) | a) + 1;
+    }
+
+    /**
+     * A hash table from long keys to int values with open addressing. The key 0 marks an empty slot, the value 0
+     * is returned for missing keys. Stale entries are dropped when the table gets full.
+     */
+    private static class Table {
+        private long[] keys;
+        private int[] values;
+        private int used = 0;
+
+        Table(int capacity){
+            keys = new long[capacity];
+            values = new int[capacity];
+        }
+
+        int get(long key){
+            int mask = keys.length - 1;
+            for(int i = hash(key) & mask; keys[i] != 0; i = (i + 1) & mask){
+                if(keys[i] == key){
+                    return values[i];
+                }
+            }
+
+            return 0;
+        }
+
+        /**
+         * Stores the value, if the table has to be cleaned up all entries with a value below minValue are dropped.
+         */
+        void put(long key, int value, int minValue){
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            for(; keys[i] != 0; i = (i + 1) & mask){
+                if(keys[i] == key){
+                    values[i] = value;
+                    return;
+                }
+            }
+
+            if(2 * (used + 1) > keys.length){
+                rebuild(minValue);
+                put(key, value, minValue);
+                return;
+            }
+
+            keys[i] = key;
+            values[i] = value;
+            used++;
+        }
+
+        private void rebuild(int minValue){
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+
+            int live = 0;
+            for(int i=0; i<oldKeys.length; i++){
+                if(oldKeys[i] != 0 && oldValues[i] >= minValue){
+                    live++;
+                }
+            }
+
+            int capacity = oldKeys.length;
+            while(4 * (live + 1) > capacity){
+                capacity *= 2;
+            }
+
+            keys = new long[capacity];
+            values = new int[capacity];
+            used = 0;
+            for(int i=0; i<oldKeys.length; i++){
+                if(oldKeys[i] != 0 && oldValues[i] >= minValue){
+                    put(oldKeys[i], oldValues[i], minValue);
+                }
+            }
+        }
+
+        void clear(){
+            Arrays.fill(keys, 0);
+            used = 0;
+        }
+
+        /**
+         * Writes the number of entries with a value of at least minValue and the entries.
+         */
+        void save(DataOutput out, int minValue) throws IOException {
+            int live = 0;
+            for(int i=0; i<keys.length; i++){
+                if(keys[i] != 0 && values[i] >= minValue){
+                    live++;
+                }
+            }
+
+            out.writeInt(live);
+            for(int i=0; i<keys.length; i++){
+                if(keys[i] != 0 && values[i] >= minValue){
+                    out.writeLong(keys[i]);
+                    out.writeInt(values[i]);
+                }
+            }
+        }
+
+        void load(DataInput in) throws IOException {
+            int live = in.readInt();
+            for(int i=0; i<live; i++){
+                long key = in.readLong();
+                put(key, in.readInt(), Integer.MIN_VALUE);
+            }
+        }
+
+        private static int hash(long key){
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package de.metal_land.tsp;
+
+import lombok.Getter;
+import lombok.extern.java.Log;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * One trajectory of the tabu search. Every step moves to the best allowed neighbor of the current route, which is
+ * then optimized with 2-opt and or-opt moves. The search keeps its own best route, so several trajectories can
+ * run side by side.
+ * @author nieh
+ */
+@Log
+public class TabuSearch {
+    private final TwoOptSearch localSearch;
+    private final ForkJoinPool pool;
+    private final SplittableRandom random;
+    private final SolverMetrics metrics;
+
+    @Getter
+    private final TabuList tabuList;
+
+    /**
+     * The route the next step starts from.
+     */
+    @Getter
+    private Route current;
+
+    /**
+     * The best route of this trajectory.
+     */
+    @Getter
+    private Route best;
+
+    /**
+     * The number of finished steps.
+     */
+    @Getter
+    private long iterations = 0;
+
+    /**
+     * The number of steps since the last new best route of this trajectory.
+     */
+    @Getter
+    private int stagnation = 0;
+
+    /**
+     * @param start The route to start from.
+     * @param candidates The candidate lists for the local search.
+     * @param tabuList The tabu list of this trajectory.
+     * @param pool The pool to sample the random neighbors on.
+     * @param random The random source of this trajectory.
+     * @param metrics The counters of the solver, may be null.
+     */
+    public TabuSearch(Route start, CandidateLists candidates, TabuList tabuList, ForkJoinPool pool,
+                      SplittableRandom random, SolverMetrics metrics){
+        this.localSearch = new TwoOptSearch(candidates);
+        this.localSearch.setMetrics(metrics);
+        this.tabuList = tabuList;
+        this.tabuList.setMetrics(metrics);
+        this.pool = pool;
+        this.random = random;
+        this.metrics = metrics;
+        this.current = start;
+        this.best = start;
+    }
+
+    /**
+     * Moves to the best allowed neighbor and optimizes it.
+     * @param bestDistance The distance of the best route of all trajectories, tabu moves below it are allowed.
+     * @return True if the trajectory found a new best route.
+     */
+    public boolean step(int bestDistance){
+        Route neighbor = current.getBestNeighbor(tabuList, bestDistance, pool, random);
+        Tour tour = new Tour(neighbor);
+        if(localSearch.optimize(tour) < 0){
+            log.fine(String.format("Old Route: %d  New Route: %d", neighbor.getDistance(), tour.getDistance()));
+            neighbor = tour.toRoute();
+        }
+
+        current = neighbor;
+        tabuList.nextIteration(current.getDistance());
+        iterations++;
+        if(metrics != null){
+            metrics.addEvaluatedMoves(Route.neighborMoves(current.getRoute().size()));
+        }
+
+        if(current.compareTo(best) < 0){
+            best = current;
+            stagnation = 0;
+            return true;
+        }
+
+        stagnation++;
+        return false;
+    }
+
+    /**
+     * Continues a search saved by a checkpoint, the tabu list is kept.
+     * @param route The current route of the saved search.
+     * @param iterations The number of finished steps.
+     * @param stagnation The number of steps since the last new best route.
+     */
+    public void resume(Route route, long iterations, int stagnation){
+        this.current = route;
+        this.iterations = iterations;
+        this.stagnation = stagnation;
+    }
+
+    /**
+     * Continues the search from another route, the tabu list is cleared.
+     * @param route The new current route.
+     */
+    public void restart(Route route){
+        current = route;
+        tabuList.clear();
+        if(route.compareTo(best) < 0){
+            best = route;
+            stagnation = 0;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package de.metal_land.tsp;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A mutable round trip stored as array of node indices together with the position of every node.
+ * Moves are scored by the change of the distance in constant time before they are applied,
+ * {@link #toRoute()} creates an immutable snapshot.
+ * @author nieh
+ */
+public class Tour {
+    private final DistanceCache distances;
+    private final Node[] nodes;
+    private final int[] tour;
+    private final int[] positions;
+
+    /**
+     * The complete distance of the tour as round trip.
+     */
+    @Getter
+    private int distance;
+
+    public Tour(Route route){
+        List<Node> routeList = route.getRoute();
+        distances = route.getDistances();
+        nodes = new Node[routeList.size()];
+        tour = new int[routeList.size()];
+        positions = new int[routeList.size()];
+
+        int i = 0;
+        for (Node node : routeList) {
+            nodes[node.getIndex()] = node;
+            tour[i] = node.getIndex();
+            positions[node.getIndex()] = i;
+            i++;
+        }
+        distance = route.getDistance();
+    }
+
+    /**
+     * Creates a copy of the tour.
+     * @param other The tour to copy.
+     */
+    public Tour(Tour other){
+        distances = other.distances;
+        nodes = other.nodes;
+        tour = other.tour.clone();
+        positions = other.positions.clone();
+        distance = other.distance;
+    }
+
+    /**
+     * Overwrites this tour with the other one, both have to contain the same nodes.
+     * @param other The tour to copy.
+     */
+    public void copyFrom(Tour other){
+        System.arraycopy(other.tour, 0, tour, 0, tour.length);
+        System.arraycopy(other.positions, 0, positions, 0, positions.length);
+        distance = other.distance;
+    }
+
+    /**
+     * Overwrites this tour with the given order of the nodes, the distance is calculated again.
+     * @param order The indices of all nodes of the tour in their new order.
+     */
+    public void setOrder(int[] order){
+        System.arraycopy(order, 0, tour, 0, tour.length);
+        distance = 0;
+        for(int i=0; i<tour.length; i++){
+            positions[tour[i]] = i;
+            distance += d(tour[i], tour[(i + 1 == tour.length)? 0 : i + 1]);
+        }
+    }
+
+    /**
+     * @return The number of nodes in the tour.
+     */
+    public int size(){
+        return tour.length;
+    }
+
+    /**
+     * @param position The position in the tour.
+     * @return The index of the node at the position.
+     */
+    public int get(int position){
+        return tour[position];
+    }
+
+    /**
+     * @param node The index of the node.
+     * @return The position of the node in the tour.
+     */
+    public int position(int node){
+        return positions[node];
+    }
+
+    /**
+     * @param node The index of the node.
+     * @return The index of the node following the given one.
+     */
+    public int next(int node){
+        int position = positions[node] + 1;
+        return tour[(position == tour.length)? 0 : position];
+    }
+
+    /**
+     * @param node The index of the node.
+     * @return The index of the node preceding the given one.
+     */
+    public int prev(int node){
+        int position = positions[node];
+        return tour[(position == 0)? tour.length - 1 : position - 1];
+    }
+
+    /**
+     * @return The distances used by the tour.
+     */
+    public DistanceCache getDistances(){
+        return distances;
+    }
+
+    private int d(int from, int to){
+        return distances.distance(from, to);
+    }
+
+    /**
+     * Calculates the change of the distance if the nodes at the two positions are swapped.
+     * @param i The first position.
+     * @param j The second position.
+     * @return The change of the distance, negative if the tour gets shorter.
+     */
+    public int swapDelta(int i, int j){
+        if(i == j || tour.length <= 3){
+            return 0;
+        }
+        if(i > j){
+            int swap = i;
+            i = j;
+            j = swap;
+        }
+        if(i == 0 && j == tour.length - 1){
+            return adjacentSwapDelta(tour[j], tour[i]);
+        } else if(j == i + 1){
+            return adjacentSwapDelta(tour[i], tour[j]);
+        }
+
+        int a = tour[i];
+        int b = tour[j];
+        int prevA = prev(a), nextA = next(a);
+        int prevB = prev(b), nextB = next(b);
+
+        return d(prevA, b) + d(b, nextA) + d(prevB, a) + d(a, nextB)
+                - d(prevA, a) - d(a, nextA) - d(prevB, b) - d(b, nextB);
+    }
+
+    /**
+     * Calculates the change of the distance for swapping every node with its successor, from the coordinates in
+     * tour order by the {@link DistanceKernel} instead of one lookup after another. Only for problems whose
+     * distances are calculated from the coordinates, and only faster if the distances are not cached.
+     * @param deltas Receives the change of {@link #swapDelta(int, int)} for the positions i and i + 1 at i, for
+     *               all i up to size() - 2.
+     */
+    public void adjacentSwapDeltas(int[] deltas){
+        int n = tour.length;
+        if(n <= 3){
+            Arrays.fill(deltas, 0, Math.max(0, n - 1), 0);
+            return;
+        }
+
+        // the coordinates in tour order, starting with the last node and wrapping around by two nodes
+        Coordinates coordinates = nodes[tour[0]].getCoordinates();
+        double[] xs = new double[n + 3];
+        double[] ys = new double[n + 3];
+        for(int k=0; k<n + 3; k++){
+            int node = tour[(k == 0)? n - 1 : (k - 1) % n];
+            xs[k] = coordinates.getX(node);
+            ys[k] = coordinates.getY(node);
+        }
+
+        // the edges to the next and to the second next node
+        int[] next = new int[n + 2];
+        int[] second = new int[n + 1];
+        DistanceKernel kernel = DistanceKernel.get();
+        kernel.pairs(coordinates.getMetric(), xs, ys, 0, xs, ys, 1, n + 2, next);
+        kernel.pairs(coordinates.getMetric(), xs, ys, 0, xs, ys, 2, n + 1, second);
+
+        for(int i=0; i<n - 1; i++){
+            deltas[i] = second[i] + second[i + 1] - next[i] - next[i + 2];
+        }
+    }
+
+    /**
+     * Calculates the change of the distance for swapping the node a with its successor b.
+     */
+    private int adjacentSwapDelta(int a, int b){
+        int prevA = prev(a);
+        int nextB = next(b);
+
+        return d(prevA, b) + d(a, nextB) - d(prevA, a) - d(b, nextB);
+    }
+
+    /**
+     * Swaps the nodes at the two positions.
+     * @param i The first position.
+     * @param j The second position.
+     */
+    public void swap(int i, int j){
+        distance += swapDelta(i, j);
+
+        int a = tour[i];
+        tour[i] = tour[j];
+        tour[j] = a;
+        positions[tour[i]] = i;
+        positions[tour[j]] = j;
+    }
+
+    /**
+     * Calculates the change of the distance for the 2-opt move, which replaces the edges (a, next(a)) and
+     * (c, next(c)) by the edges (a, c) and (next(a), next(c)).
+     * @param a The index of the first node.
+     * @param c The index of the second node.
+     * @return The change of the distance, negative if the tour gets shorter.
+     */
+    public int twoOptDelta(int a, int c){
+        int b = next(a);
+        int d = next(c);
+        if(a == c || b == c || d == a){
+            return 0;
+        }
+
+        return d(a, c) + d(b, d) - d(a, b) - d(c, d);
+    }
+
+    /**
+     * Applies the 2-opt move, see {@link #twoOptDelta(int, int)}. The shorter side of the tour is reversed.
+     * @param a The index of the first node.
+     * @param c The index of the second node.
+     */
+    public void twoOpt(int a, int c){
+        int b = next(a);
+        int d = next(c);
+        if(a == c || b == c || d == a){
+            return;
+        }
+
+        distance += twoOptDelta(a, c);
+
+        int inner = positions[c] - positions[b];
+        if(inner < 0){
+            inner += tour.length;
+        }
+
+        if(2 * (inner + 1) <= tour.length){
+            reverse(positions[b], positions[c]);
+        } else {
+            reverse(positions[d], positions[a]);
+        }
+    }
+
+    /**
+     * Calculates the change of the distance for the or-opt move, which moves the segment from s1 to sL between
+     * the node c and its successor.
+     * @param s1 The index of the first node of the segment.
+     * @param sL The index of the last node of the segment.
+     * @param c The index of the node after which the segment is inserted, it must not be part of the segment
+     *          or precede it.
+     * @param reversed True if the segment is inserted reversed.
+     * @return The change of the distance, negative if the tour gets shorter.
+     */
+    public int orOptDelta(int s1, int sL, int c, boolean reversed){
+        int p = prev(s1);
+        int n = next(sL);
+        int d = next(c);
+        if(c == p || n == s1){
+            return 0;
+        }
+
+        int removed = d(p, s1) + d(sL, n) + d(c, d);
+        int added = d(p, n) + ((reversed)? d(c, sL) + d(s1, d) : d(c, s1) + d(sL, d));
+
+        return added - removed;
+    }
+
+    /**
+     * Applies the or-opt move, see {@link #orOptDelta(int, int, int, boolean)}.
+     * @param s1 The index of the first node of the segment.
+     * @param sL The index of the last node of the segment.
+     * @param c The index of the node after which the segment is inserted.
+     * @param reversed True if the segment is inserted reversed.
+     */
+    public void orOpt(int s1, int sL, int c, boolean reversed){
+        int p = prev(s1);
+        int n = next(sL);
+        int d = next(c);
+        if(c == p || n == s1){
+            return;
+        }
+
+        distance += orOptDelta(s1, sL, c, reversed);
+
+        // the move swaps two neighboring blocks, choose the shorter one to move the segment over
+        int first = positions[s1];
+        int last = positions[sL];
+        if(length(n, c) <= length(d, p)){
+            // [s1..sL][n..c] -> [n..c][s1..sL]
+            int end = positions[c];
+            if(!reversed){
+                reverse(first, last);
+            }
+            reverse(positions[n], end);
+            reverse(first, end);
+        } else {
+            // [d..p][s1..sL] -> [s1..sL][d..p]
+            int start = positions[d];
+            reverse(start, positions[p]);
+            if(!reversed){
+                reverse(first, last);
+            }
+            reverse(start, last);
+        }
+    }
+
+    /**
+     * @return The number of nodes on the path from the node from to the node to.
+     */
+    private int length(int from, int to){
+        int length = positions[to] - positions[from];
+        if(length < 0){
+            length += tour.length;
+        }
+
+        return length + 1;
+    }
+
+    /**
+     * Reverses the part of the tour from the position from to the position to, wrapping around the end.
+     * @param from The first position.
+     * @param to The last position.
+     */
+    private void reverse(int from, int to){
+        int length = to - from;
+        if(length < 0){
+            length += tour.length;
+        }
+
+        for(int k = (length + 1) / 2; k > 0; k--){
+            int a = tour[from];
+            int b = tour[to];
+            tour[from] = b;
+            positions[b] = from;
+            tour[to] = a;
+            positions[a] = to;
+
+            from = (from + 1 == tour.length)? 0 : from + 1;
+            to = (to == 0)? tour.length - 1 : to - 1;
+        }
+    }
+
+    /**
+     * @return An immutable snapshot of the tour.
+     */
+    public Route toRoute(){
+        List<Node> routeList = new ArrayList<>(tour.length);
+        for (int node : tour) {
+            routeList.add(nodes[node]);
+        }
+
+        return new Route(routeList, distances, distance);
+    }
+}
@@ -0,0 +1,44 @@
+package de.metal_land.tsp;
+
+/**
+ * Stores the lower half of the symmetric distance matrix row by row, which needs half the memory of a full matrix.
+ * @author nieh
+ */
+public class TriangularDistanceCache implements DistanceCache {
+    private final int size;
+    private final int[] triangle;
+    private final int[] rowOffsets;
+
+    /**
+     * Calculates all distances, every row is filled at once by the distance kernel.
+     * @param coordinates The coordinates of the nodes.
+     */
+    public TriangularDistanceCache(Coordinates coordinates){
+        size = coordinates.size();
+        triangle = new int[(int) ((long) size * (size - 1) / 2)];
+        rowOffsets = new int[size];
+
+        int offset = 0;
+        for(int i=1; i<size; i++){
+            rowOffsets[i] = offset;
+            coordinates.row(i, 0, i, triangle, offset);
+            offset += i;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int distance(int from, int to) {
+        if(from == to){
+            return 0;
+        } else if(from < to){
+            return triangle[rowOffsets[to] + from];
+        }
+
+        return triangle[rowOffsets[from] + to];
+    }
+}
@@ -0,0 +1,334 @@
+package de.metal_land.tsp;
+
+import lombok.Getter;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a problem in the TSPLIB format. The input is parsed byte by byte from a buffer, the arrays are sized by
+ * the DIMENSION of the header.
+ * @author nieh
+ */
+public class TsplibReader {
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[1 << 16];
+    private int position = 0;
+    private int limit = 0;
+
+    /**
+     * The text of the number read last, only needed if the number is not simple.
+     */
+    private final StringBuilder text = new StringBuilder(32);
+
+    @Getter
+    private String name = "";
+
+    @Getter
+    private int dimension = 0;
+
+    @Getter
+    private Metric metric = Metric.EUC_2D;
+
+    @Getter
+    private String edgeWeightFormat = "FUNCTION";
+
+    /**
+     * The names of the nodes as given in the coordinate section.
+     */
+    @Getter
+    private String[] names;
+
+    @Getter
+    private double[] xs;
+
+    @Getter
+    private double[] ys;
+
+    /**
+     * The distances as flat n*n matrix, only for explicit problems.
+     */
+    @Getter
+    private int[] matrix;
+
+    public TsplibReader(InputStream in){
+        this.in = in;
+    }
+
+    /**
+     * Reads the whole problem.
+     * @return This reader.
+     * @throws IOException If the stream can not be read.
+     * @throws IllegalArgumentException If the problem has an unsupported type or format.
+     */
+    public TsplibReader read() throws IOException {
+        return read(false);
+    }
+
+    /**
+     * Reads the header up to the first section, the nodes are not read.
+     * @return This reader.
+     * @throws IOException If the stream can not be read.
+     * @throws IllegalArgumentException If the problem has an unsupported type.
+     */
+    public TsplibReader readHeader() throws IOException {
+        return read(true);
+    }
+
+    private TsplibReader read(boolean headerOnly) throws IOException {
+        String line;
+        while((line = readLine()) != null){
+            line = line.trim();
+            if(line.isEmpty()){
+                continue;
+            }
+
+            int colon = line.indexOf(':');
+            String key = ((colon >= 0)? line.substring(0, colon) : line).trim();
+            String value = (colon >= 0)? line.substring(colon + 1).trim() : "";
+
+            switch (key){
+                case "NAME":
+                    name = value;
+                    break;
+                case "TYPE":
+                    if(!value.equals("TSP")){
+                        throw new IllegalArgumentException("Unsupported problem type: " + value);
+                    }
+                    break;
+                case "DIMENSION":
+                    dimension = Integer.parseInt(value);
+                    break;
+                case "EDGE_WEIGHT_TYPE":
+                    metric = Metric.valueOf(value);
+                    break;
+                case "EDGE_WEIGHT_FORMAT":
+                    edgeWeightFormat = value;
+                    break;
+                case "NODE_COORD_SECTION":
+                case "DISPLAY_DATA_SECTION":
+                    if(headerOnly){
+                        return this;
+                    }
+                    readCoordinates();
+                    break;
+                case "EDGE_WEIGHT_SECTION":
+                    if(headerOnly){
+                        return this;
+                    }
+                    readEdgeWeights();
+                    break;
+                case "EOF":
+                    return headerOnly? this : finish();
+                default:
+                    // other keywords like COMMENT are not needed
+            }
+        }
+
+        return headerOnly? this : finish();
+    }
+
+    private TsplibReader finish(){
+        if(xs == null){
+            // explicit problems without display data have no coordinates
+            xs = new double[dimension];
+            ys = new double[dimension];
+            names = new String[dimension];
+            for(int i=0; i<dimension; i++){
+                names[i] = String.valueOf(i + 1);
+            }
+        }
+        if(metric == Metric.EXPLICIT && matrix == null){
+            throw new IllegalArgumentException("Explicit problem without EDGE_WEIGHT_SECTION");
+        }
+
+        return this;
+    }
+
+    private void readCoordinates() throws IOException {
+        names = new String[dimension];
+        xs = new double[dimension];
+        ys = new double[dimension];
+
+        for(int i=0; i<dimension; i++){
+            names[i] = readToken();
+            xs[i] = readDouble();
+            ys[i] = readDouble();
+        }
+    }
+
+    private void readEdgeWeights() throws IOException {
+        int n = dimension;
+        matrix = new int[n * n];
+
+        switch (edgeWeightFormat){
+            case "FULL_MATRIX":
+                for(int i=0; i<n * n; i++){
+                    matrix[i] = readInt();
+                }
+                break;
+            case "UPPER_ROW":
+            case "LOWER_COL":
+                for(int i=0; i<n; i++){
+                    for(int j=i+1; j<n; j++){
+                        setSymmetric(i, j, readInt());
+                    }
+                }
+                break;
+            case "LOWER_ROW":
+            case "UPPER_COL":
+                for(int i=0; i<n; i++){
+                    for(int j=0; j<i; j++){
+                        setSymmetric(i, j, readInt());
+                    }
+                }
+                break;
+            case "UPPER_DIAG_ROW":
+            case "LOWER_DIAG_COL":
+                for(int i=0; i<n; i++){
+                    for(int j=i; j<n; j++){
+                        setSymmetric(i, j, readInt());
+                    }
+                }
+                break;
+            case "LOWER_DIAG_ROW":
+            case "UPPER_DIAG_COL":
+                for(int i=0; i<n; i++){
+                    for(int j=0; j<=i; j++){
+                        setSymmetric(i, j, readInt());
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported edge weight format: " + edgeWeightFormat);
+        }
+    }
+
+    private void setSymmetric(int i, int j, int distance){
+        matrix[i * dimension + j] = distance;
+        matrix[j * dimension + i] = distance;
+    }
+
+    /**
+     * @return The next byte or -1 at the end of the stream.
+     */
+    private int nextByte() throws IOException {
+        if(position == limit){
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if(limit <= 0){
+                limit = 0;
+                return -1;
+            }
+        }
+
+        return buffer[position++] & 0xFF;
+    }
+
+    private static boolean isWhitespace(int b){
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private int skipWhitespace() throws IOException {
+        int b;
+        do {
+            b = nextByte();
+        } while(isWhitespace(b));
+
+        if(b < 0){
+            throw new EOFException("Unexpected end of the problem " + name);
+        }
+
+        return b;
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b = nextByte();
+        if(b < 0){
+            return null;
+        }
+
+        while(b >= 0 && b != '\n'){
+            line.append((char) b);
+            b = nextByte();
+        }
+
+        return line.toString();
+    }
+
+    private String readToken() throws IOException {
+        StringBuilder token = new StringBuilder();
+        int b = skipWhitespace();
+        while(b >= 0 && !isWhitespace(b)){
+            token.append((char) b);
+            b = nextByte();
+        }
+
+        return token.toString();
+    }
+
+    private int readInt() throws IOException {
+        double value = readDouble();
+        if(value != Math.rint(value)){
+            throw new IllegalArgumentException("Edge weights have to be integers: " + value);
+        }
+
+        return (int) value;
+    }
+
+    /**
+     * Parses a decimal number. Numbers with up to 18 digits are assembled from the bytes directly, longer ones fall
+     * back to {@link Double#parseDouble(String)}.
+     */
+    private double readDouble() throws IOException {
+        int b = skipWhitespace();
+        text.setLength(0);
+
+        boolean negative = false;
+        if(b == '-' || b == '+'){
+            negative = b == '-';
+            text.append((char) b);
+            b = nextByte();
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+        boolean simple = true;
+        for(; b >= 0 && !isWhitespace(b); b = nextByte()){
+            text.append((char) b);
+            if(b >= '0' && b <= '9'){
+                if(digits < 18){
+                    mantissa = mantissa * 10 + (b - '0');
+                    if(fraction){
+                        fractionDigits++;
+                    }
+                } else {
+                    simple = false;
+                }
+                digits++;
+            } else if(b == '.' && !fraction){
+                fraction = true;
+            } else {
+                // an exponent or something unusual
+                simple = false;
+            }
+        }
+
+        if(digits == 0){
+            throw new NumberFormatException("Not a number: " + text);
+        } else if(!simple){
+            return Double.parseDouble(text.toString());
+        }
+
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+}
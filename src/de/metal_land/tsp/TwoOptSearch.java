@@ -0,0 +1,221 @@
+package de.metal_land.tsp;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A local search with 2-opt and or-opt moves, which runs until no improving move is left.
+ * Only the candidate lists are searched for new edges and every node has a don't-look bit, so a node is only
+ * looked at again after one of its edges was changed.
+ * @author nieh
+ */
+public class TwoOptSearch {
+    private final CandidateLists candidates;
+
+    /**
+     * True if or-opt moves are used besides the 2-opt moves.
+     */
+    @Getter
+    @Setter
+    private boolean orOpt = true;
+
+    /**
+     * The maximal length of the segments moved by or-opt.
+     */
+    @Getter
+    @Setter
+    private int maxSegmentLength = 3;
+
+    /**
+     * Counts the evaluated moves, may be null.
+     */
+    @Getter
+    @Setter
+    private SolverMetrics metrics = null;
+
+    /**
+     * The number of moves evaluated by the running optimization.
+     */
+    private long evaluatedMoves;
+
+    private Tour tour;
+    private DistanceCache distances;
+    private NodeQueue queue;
+
+    public TwoOptSearch(CandidateLists candidates){
+        this.candidates = candidates;
+    }
+
+    /**
+     * Improves the tour until it is a local optimum, all nodes are looked at.
+     * @param tour The tour to improve.
+     * @return The change of the distance.
+     */
+    public int optimize(Tour tour){
+        init(tour);
+        for(int i=0; i<tour.size(); i++){
+            push(tour.get(i));
+        }
+
+        return run();
+    }
+
+    /**
+     * Improves the tour until it is a local optimum, starting only with the given nodes.
+     * @param tour The tour to improve.
+     * @param nodes The indices of the nodes to look at first.
+     * @return The change of the distance.
+     */
+    public int optimize(Tour tour, int... nodes){
+        init(tour);
+        for (int node : nodes) {
+            push(node);
+        }
+
+        return run();
+    }
+
+    private void init(Tour tour){
+        this.tour = tour;
+        this.distances = tour.getDistances();
+        if(queue == null || queue.capacity() != tour.size()){
+            queue = new NodeQueue(tour.size());
+        } else {
+            queue.clear();
+        }
+    }
+
+    private int run(){
+        int start = tour.getDistance();
+        evaluatedMoves = 0;
+        while(!queue.isEmpty()){
+            int node = queue.pop();
+            while(improveTwoOpt(node) || (orOpt && improveOrOpt(node))){
+                // stay at the node as long as it can be improved
+            }
+        }
+
+        if(metrics != null){
+            metrics.addEvaluatedMoves(evaluatedMoves);
+        }
+
+        return tour.getDistance() - start;
+    }
+
+    private int d(int from, int to){
+        return distances.distance(from, to);
+    }
+
+    /**
+     * Searches an improving 2-opt move, which removes one of the edges of the node.
+     * @param a The index of the node.
+     * @return True if a move was applied.
+     */
+    private boolean improveTwoOpt(int a){
+        int succ = tour.next(a);
+        int pred = tour.prev(a);
+        int succDistance = d(a, succ);
+        int predDistance = d(pred, a);
+
+        for(int rank=0; rank<candidates.size(); rank++){
+            int c = candidates.get(a, rank);
+            int newDistance = d(a, c);
+            evaluatedMoves++;
+            if(newDistance >= succDistance && newDistance >= predDistance){
+                break;
+            }
+
+            // replace (a, succ) and (c, next(c)) by (a, c) and (succ, next(c))
+            if(newDistance < succDistance && tour.twoOptDelta(a, c) < 0){
+                int d = tour.next(c);
+                tour.twoOpt(a, c);
+                push(a, succ, c, d);
+                return true;
+            }
+
+            // replace (pred, a) and (prev(c), c) by (a, c) and (pred, prev(c))
+            int prevC = tour.prev(c);
+            if(newDistance < predDistance && tour.twoOptDelta(pred, prevC) < 0){
+                tour.twoOpt(pred, prevC);
+                push(a, pred, c, prevC);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Searches an improving or-opt move for the segments starting at the node.
+     * @param s1 The index of the node.
+     * @return True if a move was applied.
+     */
+    private boolean improveOrOpt(int s1){
+        int p = tour.prev(s1);
+        int sL = s1;
+
+        for(int length=1; length<=maxSegmentLength && length+3<=tour.size(); length++){
+            if(length > 1){
+                sL = tour.next(sL);
+                if(sL == p){
+                    break;
+                }
+            }
+            int n = tour.next(sL);
+            int removeGain = d(p, s1) + d(sL, n) - d(p, n);
+            if(removeGain <= 0){
+                continue;
+            }
+
+            for(int rank=0; rank<candidates.size(); rank++){
+                int c = candidates.get(s1, rank);
+                if(d(s1, c) >= removeGain){
+                    break;
+                }
+                evaluatedMoves++;
+                if(inSegment(c, s1, length)){
+                    continue;
+                }
+
+                // c - s1 .. sL - next(c)
+                if(c != p && tour.orOptDelta(s1, sL, c, false) < 0){
+                    int d = tour.next(c);
+                    tour.orOpt(s1, sL, c, false);
+                    push(p, n, s1, sL, c, d);
+                    return true;
+                }
+
+                // prev(c) - sL .. s1 - c
+                int prevC = tour.prev(c);
+                if(prevC != p && !inSegment(prevC, s1, length) && tour.orOptDelta(s1, sL, prevC, true) < 0){
+                    tour.orOpt(s1, sL, prevC, true);
+                    push(p, n, s1, sL, prevC, c);
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return True if the node is one of the length nodes starting at s1.
+     */
+    private boolean inSegment(int node, int s1, int length){
+        int offset = tour.position(node) - tour.position(s1);
+        if(offset < 0){
+            offset += tour.size();
+        }
+
+        return offset < length;
+    }
+
+    /**
+     * Clears the don't-look bits of the nodes.
+     */
+    private void push(int... nodes){
+        for (int node : nodes) {
+            queue.push(node);
+        }
+    }
+}
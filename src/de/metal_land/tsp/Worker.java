@@ -0,0 +1,155 @@
+package de.metal_land.tsp;
+
+import lombok.extern.java.Log;
+
+import java.io.*;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+
+/**
+ * Improves the routes of a {@link Coordinator} in its own process. The search runs in rounds of the round time
+ * given by the coordinator: after every round a new own best tour is sent, and the search continues from the
+ * best tour of all workers if the coordinator sent a better one.
+ * @author nieh
+ */
+@Log
+public class Worker implements Runnable {
+    private final String host;
+    private final int port;
+
+    /**
+     * The best tour of all workers sent by the coordinator and not taken yet.
+     */
+    private final AtomicReference<Route> received = new AtomicReference<>();
+
+    private volatile boolean stopped = false;
+    private TSP problem;
+
+    /**
+     * @param host The host of the coordinator.
+     * @param port The port of the coordinator.
+     */
+    public Worker(String host, int port){
+        this.host = host;
+        this.port = port;
+    }
+
+    public static void main(String args[]){
+        if(args.length < 2){
+            System.err.println("Usage: Worker <host> <port>");
+            System.exit(1);
+        }
+
+        new Worker(args[0], Integer.parseInt(args[1])).run();
+    }
+
+    @Override
+    public void run() {
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            if(in.readByte() != Protocol.PROBLEM || in.readInt() != Protocol.MAGIC){
+                throw new ProtocolException("Not a coordinator");
+            }
+            if(in.readInt() != Protocol.VERSION){
+                throw new ProtocolException("Unsupported protocol version");
+            }
+            problem = readProblem(in);
+            int ordinal = in.readUnsignedByte();
+            if(ordinal >= TSP.Improvement.values().length){
+                throw new ProtocolException("Unknown improvement: " + ordinal);
+            }
+            TSP.Improvement improvement = TSP.Improvement.values()[ordinal];
+            boolean hasSeed = in.readBoolean();
+            long seed = in.readLong();
+            if(hasSeed){
+                problem.setSeed(seed);
+            }
+            int roundTime = in.readInt();
+            if(in.readByte() != Protocol.TOUR){
+                throw new ProtocolException("Missing start tour");
+            }
+            Route best = Protocol.readTour(in, problem);
+            problem.offerBestRoute(best);
+            log.info(String.format("Improving %s with %s from %d", problem.getName(), improvement, best.getDistance()));
+
+            startReceiver(in);
+            problem.getStopCondition().setTimeLimit(roundTime);
+            problem.getStopCondition().setMaxStagnation(0);
+            while(!stopped){
+                Route route = received.getAndSet(null);
+                if(route != null && route.compareTo(problem.getBestRoute()) < 0){
+                    problem.offerBestRoute(route);
+                    problem.restartFrom(route);
+                    best = route;
+                }
+
+                problem.improve(improvement);
+
+                if(problem.getBestRoute().compareTo(best) < 0){
+                    best = problem.getBestRoute();
+                    Protocol.writeTour(out, best);
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            if(!stopped){
+                throw new UncheckedIOException(e);
+            }
+        }
+        log.info("Worker stopped");
+    }
+
+    /**
+     * Reads the problem in the binary format, it is kept in a temporary file which is mapped by the distances.
+     */
+    private static TSP readProblem(DataInputStream in) throws IOException {
+        byte[] instance = new byte[in.readInt()];
+        in.readFully(instance);
+        Path file = Files.createTempFile("tsp", ".bin");
+        file.toFile().deleteOnExit();
+        Files.write(file, instance);
+
+        TSP problem = new TSP();
+        problem.readFromBinary(file);
+        problem.calculateDistances();
+        return problem;
+    }
+
+    /**
+     * Reads the messages of the coordinator on its own thread until it sends STOP or the connection ends,
+     * then the running search is cancelled.
+     */
+    private void startReceiver(final DataInputStream in){
+        Thread receiver = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while(true){
+                        byte type = in.readByte();
+                        if(type == Protocol.TOUR){
+                            received.set(Protocol.readTour(in, problem));
+                        } else if(type == Protocol.STOP){
+                            break;
+                        } else {
+                            throw new ProtocolException("Unexpected message: " + type);
+                        }
+                    }
+                } catch (IOException e) {
+                    log.log(Level.FINE, "Connection to the coordinator ended", e);
+                } finally {
+                    stopped = true;
+                    problem.cancel();
+                }
+            }
+        }, "Coordinator");
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+}
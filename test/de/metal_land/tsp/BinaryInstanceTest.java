@@ -0,0 +1,175 @@
+package de.metal_land.tsp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Writes problems read from the TSPLIB format in the binary format and reads them again, the distances and
+ * candidate lists have to stay the same.
+ * @author nieh
+ */
+public class BinaryInstanceTest {
+    private static final int SIZE = 20;
+
+    @TempDir
+    Path directory;
+
+    private static String coordinateProblem(Metric metric){
+        SplittableRandom random = new SplittableRandom(42);
+        StringBuilder text = new StringBuilder();
+        text.append("NAME : random\n");
+        text.append("TYPE : TSP\n");
+        text.append("DIMENSION : ").append(SIZE).append('\n');
+        text.append("EDGE_WEIGHT_TYPE : ").append(metric).append('\n');
+        text.append("NODE_COORD_SECTION\n");
+        for(int i=0; i<SIZE; i++){
+            // degrees and minutes for the geographical problems
+            text.append(i + 1).append(' ').append(random.nextInt(-80, 80)).append('.').append(random.nextInt(60))
+                    .append(' ').append(random.nextInt(-170, 170)).append('.').append(random.nextInt(60)).append('\n');
+        }
+        text.append("EOF\n");
+
+        return text.toString();
+    }
+
+    private static String explicitProblem(){
+        SplittableRandom random = new SplittableRandom(7);
+        StringBuilder text = new StringBuilder();
+        text.append("NAME : explicit\n");
+        text.append("TYPE : TSP\n");
+        text.append("DIMENSION : ").append(SIZE).append('\n');
+        text.append("EDGE_WEIGHT_TYPE : EXPLICIT\n");
+        text.append("EDGE_WEIGHT_FORMAT : UPPER_ROW\n");
+        text.append("EDGE_WEIGHT_SECTION\n");
+        for(int i=0; i<SIZE; i++){
+            for(int j=i+1; j<SIZE; j++){
+                text.append(random.nextInt(1, 1000)).append(' ');
+            }
+            text.append('\n');
+        }
+        text.append("EOF\n");
+
+        return text.toString();
+    }
+
+    private static TSP readText(String text){
+        TSP problem = new TSP();
+        problem.readFromFile(new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII)));
+        problem.calculateDistances();
+
+        return problem;
+    }
+
+    private TSP roundTrip(TSP problem, String file){
+        Path binaryFile = directory.resolve(file);
+        problem.writeBinary(binaryFile, 4711);
+        assertEquals(4711, BinaryInstance.readChecksum(binaryFile));
+
+        TSP copy = new TSP();
+        copy.readFromBinary(binaryFile);
+        copy.calculateDistances();
+
+        return copy;
+    }
+
+    private static void assertSameProblem(TSP expected, TSP actual){
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getMetric(), actual.getMetric());
+        assertEquals(expected.getNodes().size(), actual.getNodes().size());
+
+        int n = expected.getNodes().size();
+        for(int i=0; i<n; i++){
+            Node node = expected.getNodes().get(i);
+            Node copy = actual.getNodes().get(i);
+            assertEquals(node.getName(), copy.getName());
+            assertEquals(node.getX(), copy.getX());
+            assertEquals(node.getY(), copy.getY());
+            for(int j=0; j<n; j++){
+                assertEquals(expected.getDistances().distance(i, j), actual.getDistances().distance(i, j),
+                        expected.getMetric() + " " + i + "-" + j);
+            }
+        }
+
+        CandidateLists candidates = expected.getCandidates();
+        CandidateLists copiedCandidates = actual.getCandidates();
+        assertEquals(candidates.size(), copiedCandidates.size());
+        for(int node=0; node<n; node++){
+            for(int rank=0; rank<candidates.size(); rank++){
+                assertEquals(candidates.get(node, rank), copiedCandidates.get(node, rank),
+                        expected.getMetric() + " " + node + "/" + rank);
+            }
+        }
+    }
+
+    @Test
+    public void keepsTheDistancesOfEveryMetric(){
+        Metric[] metrics = {Metric.EUC_2D, Metric.CEIL_2D, Metric.GEO, Metric.ATT};
+        for (Metric metric : metrics) {
+            TSP problem = readText(coordinateProblem(metric));
+            assertSameProblem(problem, roundTrip(problem, metric + ".bin"));
+        }
+    }
+
+    @Test
+    public void keepsTheExplicitDistances(){
+        TSP problem = readText(explicitProblem());
+        assertSameProblem(problem, roundTrip(problem, "explicit.bin"));
+    }
+
+    @Test
+    public void leavesOutTheDistances() throws IOException {
+        TSP problem = readText(coordinateProblem(Metric.EUC_2D));
+        Path binaryFile = directory.resolve("coordinates.bin");
+        BinaryInstance.write(binaryFile, 1, problem, false);
+
+        BinaryInstance instance = BinaryInstance.read(binaryFile);
+        assertNull(instance.getDistances());
+        assertNotNull(instance.getCandidates());
+
+        TSP copy = new TSP();
+        copy.readFromBinary(binaryFile);
+        copy.calculateDistances();
+        assertSameProblem(problem, copy);
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws IOException {
+        Path textFile = directory.resolve("random.tsp");
+        Files.write(textFile, coordinateProblem(Metric.EUC_2D).getBytes(StandardCharsets.US_ASCII));
+
+        assertEquals(-1, BinaryInstance.readChecksum(textFile));
+        assertEquals(-1, BinaryInstance.readChecksum(directory.resolve("missing.bin")));
+        try {
+            BinaryInstance.read(textFile);
+            fail("A TSPLIB file is not a binary problem");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void readsTheChecksumOfTheTextFile() throws IOException {
+        Path textFile = directory.resolve("random.tsp");
+        Files.write(textFile, coordinateProblem(Metric.ATT).getBytes(StandardCharsets.US_ASCII));
+
+        TSP problem = new TSP();
+        problem.readCached(textFile.toFile());
+        Path binaryFile = directory.resolve("random.tsp.bin");
+        assertEquals(BinaryInstance.checksum(textFile), BinaryInstance.readChecksum(binaryFile));
+
+        problem.calculateDistances();
+        assertSameProblem(readText(coordinateProblem(Metric.ATT)), problem);
+    }
+}
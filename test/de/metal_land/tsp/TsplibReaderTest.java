@@ -0,0 +1,189 @@
+package de.metal_land.tsp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Reads small problems of every metric and every format of explicit distances.
+ * @author nieh
+ */
+public class TsplibReaderTest {
+    /**
+     * The distances of the explicit problems, every format has to give this matrix.
+     */
+    private static final int[][] MATRIX = {
+            {0, 3, 5, 7},
+            {3, 0, 4, 6},
+            {5, 4, 0, 2},
+            {7, 6, 2, 0}};
+
+    static TsplibReader read(String text) throws IOException {
+        return new TsplibReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII))).read();
+    }
+
+    static String coordinateProblem(String metric){
+        return "NAME : small\n"
+                + "COMMENT : four nodes\n"
+                + "TYPE : TSP\n"
+                + "DIMENSION : 4\n"
+                + "EDGE_WEIGHT_TYPE : " + metric + "\n"
+                + "NODE_COORD_SECTION\n"
+                + "1 0 0\n"
+                + "2 3 4\n"
+                + "3 -1.5 2.25\n"
+                + "4 10.0 0\n"
+                + "EOF\n";
+    }
+
+    static String explicitProblem(String format, String weights){
+        return "NAME : matrix\r\n"
+                + "TYPE : TSP\r\n"
+                + "DIMENSION : 4\r\n"
+                + "EDGE_WEIGHT_TYPE : EXPLICIT\r\n"
+                + "EDGE_WEIGHT_FORMAT : " + format + "\r\n"
+                + "EDGE_WEIGHT_SECTION\r\n"
+                + weights + "\r\n"
+                + "EOF\r\n";
+    }
+
+    private static int[] flat(int[][] matrix){
+        int[] flat = new int[matrix.length * matrix.length];
+        for(int i=0; i<matrix.length; i++){
+            System.arraycopy(matrix[i], 0, flat, i * matrix.length, matrix.length);
+        }
+
+        return flat;
+    }
+
+    @Test
+    public void readsCoordinates() throws IOException {
+        TsplibReader reader = read(coordinateProblem("EUC_2D"));
+
+        assertEquals("small", reader.getName());
+        assertEquals(4, reader.getDimension());
+        assertEquals(Metric.EUC_2D, reader.getMetric());
+        assertArrayEquals(new String[]{"1", "2", "3", "4"}, reader.getNames());
+        assertArrayEquals(new double[]{0, 3, -1.5, 10}, reader.getXs());
+        assertArrayEquals(new double[]{0, 4, 2.25, 0}, reader.getYs());
+        assertEquals(null, reader.getMatrix());
+    }
+
+    @Test
+    public void readsEveryMetric() throws IOException {
+        String[] metrics = {"EUC_2D", "CEIL_2D", "GEO", "ATT"};
+        for (String name : metrics) {
+            TsplibReader reader = read(coordinateProblem(name));
+            Metric metric = Metric.valueOf(name);
+            assertEquals(metric, reader.getMetric());
+
+            Coordinates coordinates = new Coordinates(metric, reader.getNames(), reader.getXs(), reader.getYs());
+            for(int i=0; i<4; i++){
+                // the formula of TSPLIB rounds even the distance of a place to itself up to 1 km
+                assertEquals((metric == Metric.GEO)? 1 : 0, coordinates.distance(i, i), name);
+                for(int j=0; j<4; j++){
+                    assertEquals(coordinates.distance(i, j), coordinates.distance(j, i), name);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void calculatesTheTsplibDistances(){
+        assertEquals(5, Metric.EUC_2D.distance(0, 0, 3, 4));
+        assertEquals(1, Metric.EUC_2D.distance(0, 0, 1, 1));
+        assertEquals(2, Metric.CEIL_2D.distance(0, 0, 1, 1));
+        assertEquals(4, Metric.ATT.distance(0, 0, 10, 0));
+        // one degree of longitude on the equator, 111.3 km rounded up
+        assertEquals(112, Metric.GEO.distance(0, 0, 0, 1));
+    }
+
+    @Test
+    public void readsEveryExplicitFormat() throws IOException {
+        String[][] formats = {
+                {"FULL_MATRIX", "0 3 5 7\n3 0 4 6\n5 4 0 2\n7 6 2 0"},
+                {"UPPER_ROW", "3 5 7\n4 6\n2"},
+                {"LOWER_COL", "3 5 7 4 6 2"},
+                {"LOWER_ROW", "3\n5 4\n7 6 2"},
+                {"UPPER_COL", "3 5 4 7 6 2"},
+                {"UPPER_DIAG_ROW", "0 3 5 7\n0 4 6\n0 2\n0"},
+                {"LOWER_DIAG_COL", "0 3 5 7 0 4 6 0 2 0"},
+                {"LOWER_DIAG_ROW", "0\n3 0\n5 4 0\n7 6 2 0"},
+                {"UPPER_DIAG_COL", "0 3 0 5 4 0 7 6 2 0"}};
+
+        for (String[] format : formats) {
+            TsplibReader reader = read(explicitProblem(format[0], format[1]));
+
+            assertEquals(Metric.EXPLICIT, reader.getMetric(), format[0]);
+            assertEquals(format[0], reader.getEdgeWeightFormat());
+            assertArrayEquals(flat(MATRIX), reader.getMatrix(), format[0]);
+            assertArrayEquals(new String[]{"1", "2", "3", "4"}, reader.getNames(), format[0]);
+        }
+    }
+
+    @Test
+    public void readsTheHeaderOnly() throws IOException {
+        TsplibReader reader = new TsplibReader(new ByteArrayInputStream(
+                coordinateProblem("ATT").getBytes(StandardCharsets.US_ASCII))).readHeader();
+
+        assertEquals("small", reader.getName());
+        assertEquals(4, reader.getDimension());
+        assertEquals(Metric.ATT, reader.getMetric());
+        assertEquals(null, reader.getXs());
+    }
+
+    @Test
+    public void rejectsOtherProblemTypes() {
+        assertRejected(IllegalArgumentException.class, coordinateProblem("EUC_2D").replace("TYPE : TSP", "TYPE : ATSP"));
+    }
+
+    @Test
+    public void rejectsUnknownMetrics() {
+        assertRejected(IllegalArgumentException.class, coordinateProblem("MAN_3D"));
+    }
+
+    @Test
+    public void rejectsUnknownFormats() {
+        assertRejected(IllegalArgumentException.class, explicitProblem("FUNCTION", "3 5 7 4 6 2"));
+    }
+
+    @Test
+    public void rejectsExplicitProblemsWithoutDistances() {
+        assertRejected(IllegalArgumentException.class, explicitProblem("UPPER_ROW", "").replace("EDGE_WEIGHT_SECTION\r\n", ""));
+    }
+
+    @Test
+    public void rejectsFractionalWeights() {
+        assertRejected(IllegalArgumentException.class, explicitProblem("UPPER_ROW", "3 5 7.5 4 6 2"));
+    }
+
+    @Test
+    public void rejectsBadDimensions() {
+        assertRejected(NumberFormatException.class, coordinateProblem("EUC_2D").replace("DIMENSION : 4", "DIMENSION : four"));
+    }
+
+    @Test
+    public void rejectsTruncatedSections() {
+        assertRejected(EOFException.class, explicitProblem("UPPER_ROW", "3 5 7 4").replace("EOF\r\n", ""));
+        assertRejected(EOFException.class, coordinateProblem("EUC_2D").replace("4 10.0 0\nEOF\n", ""));
+    }
+
+    private static void assertRejected(Class<? extends Exception> expected, String text) {
+        try {
+            read(text);
+        } catch (Exception e) {
+            if(expected.isInstance(e)){
+                return;
+            }
+            fail("Expected " + expected.getSimpleName() + " but got " + e);
+        }
+        fail("Expected " + expected.getSimpleName());
+    }
+}
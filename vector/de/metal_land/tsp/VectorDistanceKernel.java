@@ -0,0 +1,113 @@
+package de.metal_land.tsp;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The distance kernel on the Vector API, it calculates as many distances at once as doubles fit into the
+ * preferred vector size. The euclidean and the att distances are vectorised, the other metrics use the scalar
+ * loops. The distances are rounded as doubles and converted to int by a plain loop over a block, because the
+ * vector conversions of doubles to ints are not compiled to vector instructions by every JVM.
+ * Needs the JVM option --add-modules jdk.incubator.vector, it is only built by the vector profile.
+ * @author nieh
+ */
+public class VectorDistanceKernel extends DistanceKernel {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+
+    /**
+     * The number of distances rounded before they are converted.
+     */
+    private static final int BLOCK = 512;
+
+    /**
+     * Adding and subtracting 2^52 rounds every smaller double to an integer.
+     */
+    private static final double ROUNDING = 0x1p52;
+
+    private final DistanceKernel scalar = new Scalar();
+
+    @Override
+    public void row(Metric metric, double[] xs, double[] ys, int from, int start, int count, int[] out, int offset) {
+        if(!isVectorised(metric)){
+            scalar.row(metric, xs, ys, from, start, count, out, offset);
+            return;
+        }
+
+        DoubleVector x = DoubleVector.broadcast(DOUBLES, xs[from]);
+        DoubleVector y = DoubleVector.broadcast(DOUBLES, ys[from]);
+        double[] block = new double[BLOCK];
+        for(int done=0; done<count; done+=BLOCK){
+            int length = Math.min(BLOCK, count - done);
+            int bound = DOUBLES.loopBound(length);
+            int i = 0;
+            for(; i<bound; i+=DOUBLES.length()){
+                DoubleVector dx = x.sub(DoubleVector.fromArray(DOUBLES, xs, start + done + i));
+                DoubleVector dy = y.sub(DoubleVector.fromArray(DOUBLES, ys, start + done + i));
+                round(metric, dx.mul(dx).add(dy.mul(dy))).intoArray(block, i);
+            }
+
+            for(int j=0; j<i; j++){
+                out[offset + done + j] = (int) block[j];
+            }
+            scalar.row(metric, xs, ys, from, start + done + i, length - i, out, offset + done + i);
+        }
+    }
+
+    @Override
+    public void pairs(Metric metric, double[] ax, double[] ay, int aOffset,
+                      double[] bx, double[] by, int bOffset, int count, int[] out) {
+        if(!isVectorised(metric)){
+            scalar.pairs(metric, ax, ay, aOffset, bx, by, bOffset, count, out);
+            return;
+        }
+
+        double[] block = new double[BLOCK];
+        for(int done=0; done<count; done+=BLOCK){
+            int length = Math.min(BLOCK, count - done);
+            int bound = DOUBLES.loopBound(length);
+            int i = 0;
+            for(; i<bound; i+=DOUBLES.length()){
+                int a = aOffset + done + i;
+                int b = bOffset + done + i;
+                DoubleVector dx = DoubleVector.fromArray(DOUBLES, ax, a).sub(DoubleVector.fromArray(DOUBLES, bx, b));
+                DoubleVector dy = DoubleVector.fromArray(DOUBLES, ay, a).sub(DoubleVector.fromArray(DOUBLES, by, b));
+                round(metric, dx.mul(dx).add(dy.mul(dy))).intoArray(block, i);
+            }
+
+            for(int j=0; j<i; j++){
+                out[done + j] = (int) block[j];
+            }
+            for(; i<length; i++){
+                int a = aOffset + done + i;
+                int b = bOffset + done + i;
+                out[done + i] = metric.distance(ax[a], ay[a], bx[b], by[b]);
+            }
+        }
+    }
+
+    private static boolean isVectorised(Metric metric){
+        return metric == Metric.EUC_2D || metric == Metric.CEIL_2D || metric == Metric.ATT;
+    }
+
+    /**
+     * Calculates the distances from the squared lengths the way {@link Metric#distance(double, double, double, double)}
+     * does, as doubles that give the distance when they are converted to int.
+     */
+    private static DoubleVector round(Metric metric, DoubleVector squared){
+        if(metric == Metric.EUC_2D){
+            return squared.lanewise(VectorOperators.SQRT).add(0.5);
+        }
+
+        // CEIL_2D and ATT round up, the att rounding to the nearest integer plus one if that is below is the same
+        DoubleVector exact = (metric == Metric.ATT)? squared.div(10.0).lanewise(VectorOperators.SQRT)
+                : squared.lanewise(VectorOperators.SQRT);
+        DoubleVector nearest = exact.add(ROUNDING).sub(ROUNDING);
+        return nearest.add(1.0, nearest.lt(exact));
+    }
+
+    @Override
+    public String toString() {
+        return "Vector(" + DOUBLES + ")";
+    }
+}